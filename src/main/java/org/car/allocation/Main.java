@@ -1,18 +1,32 @@
 package org.car.allocation;
 
 import org.car.allocation.handler.UserHandler;
+import org.car.allocation.server.AllocationServer;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.car.allocation.singleton.HibernateUtil;
 import org.car.allocation.util.UserRole;
 
+import java.io.IOException;
+import java.text.MessageFormat;
 import java.util.ResourceBundle;
 import java.util.Scanner;
 
 public class Main {
     private static final ResourceBundle messages = ResourceBundle.getBundle("messages");
+    private static final int DEFAULT_SERVER_PORT = 8080;
+    private static final int MAX_PORT = 65535;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? parsePort(args[1]) : DEFAULT_SERVER_PORT;
+            if (port < 0) {
+                System.out.println(MessageFormat.format(messages.getString("server.usage"), args[1]));
+                return;
+            }
+            startServer(port);
+            return;
+        }
         SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
         Session session = sessionFactory.openSession();
 
@@ -24,6 +38,38 @@ public class Main {
         HibernateUtil.shutdown();
     }
 
+    /**
+     * Serves the allocation API over HTTP instead of the console menu, until the JVM is stopped.
+     *
+     * @param port the port to listen on.
+     * @throws IOException if the port cannot be bound.
+     */
+    private static void startServer(int port) throws IOException {
+        HibernateUtil.getSessionFactory();
+        AllocationServer server = new AllocationServer(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            HibernateUtil.shutdown();
+        }));
+        server.start();
+        System.out.println(MessageFormat.format(messages.getString("server.started"), String.valueOf(server.getPort())));
+    }
+
+    /**
+     * Parses the port given to {@code --server}.
+     *
+     * @param port the argument.
+     * @return the port, or -1 if the argument is not a number from 0 to {@value #MAX_PORT}.
+     */
+    private static int parsePort(String port) {
+        try {
+            int value = Integer.parseInt(port);
+            return value >= 0 && value <= MAX_PORT ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private static void showMainMenu() {
         Scanner scanner = new Scanner(System.in);
         UserHandler userHandler = new UserHandler(scanner);
@@ -0,0 +1,138 @@
+package org.car.allocation.handler;
+
+import org.car.allocation.model.Vehicle;
+import org.car.allocation.strategy.AllocationStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Coalesces the candidate scans of concurrent allocations with equal strategies.
+ * <p>
+ * The first request for a strategy opens a group, and the requests for an equal strategy that
+ * arrive within the window join it. When the window closes, or the group is full, the candidates
+ * are scanned and ranked once for the whole group, e.g. by a {@link VehicleAllocationHandler}, and
+ * handed out in order: the {@code i}-th member gets the {@code i}-th best vehicle first, so the
+ * members do not all race for the same one, followed by the spare vehicles ranked after those of
+ * every member, to fall back on if its own is taken.
+ * </p>
+ */
+public class AllocationCoalescer {
+    private static final int MAX_GROUP_SIZE = 64;
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().daemon().name("allocation-coalescer-", 0).factory());
+
+    private final BiFunction<AllocationStrategy, Integer, List<Vehicle>> ranker;
+    private final long windowMillis;
+    private final int candidatesPerRequest;
+    private final ConcurrentHashMap<AllocationStrategy, Group> openGroups = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a coalescer.
+     *
+     * @param ranker ranks the best candidates of a strategy, given the maximum number to return
+     * @param windowMillis how long a group waits for more requests, in milliseconds
+     * @param candidatesPerRequest the maximum number of candidates handed to each request
+     */
+    public AllocationCoalescer(BiFunction<AllocationStrategy, Integer, List<Vehicle>> ranker,
+                               long windowMillis, int candidatesPerRequest) {
+        this.ranker = ranker;
+        this.windowMillis = windowMillis;
+        this.candidatesPerRequest = candidatesPerRequest;
+    }
+
+    /**
+     * Ranks the candidates for one request, together with the concurrent requests for an equal strategy.
+     *
+     * @param strategy the strategy of the request
+     * @return completes with up to {@code candidatesPerRequest} vehicles, the one meant for this
+     * request first, or with an empty list if the group has more members than candidates
+     */
+    public CompletableFuture<List<Vehicle>> rankCandidates(AllocationStrategy strategy) {
+        while (true) {
+            Group group = openGroups.computeIfAbsent(strategy, this::openGroup);
+            CompletableFuture<List<Vehicle>> candidates = group.join();
+            if (candidates != null) {
+                if (group.isFull()) {
+                    flush(strategy, group);
+                }
+                return candidates;
+            }
+            //The group was flushed in the meantime: open a new one
+            openGroups.remove(strategy, group);
+        }
+    }
+
+    private Group openGroup(AllocationStrategy strategy) {
+        Group group = new Group();
+        scheduler.schedule(() -> flush(strategy, group), windowMillis, TimeUnit.MILLISECONDS);
+        return group;
+    }
+
+    private void flush(AllocationStrategy strategy, Group group) {
+        openGroups.remove(strategy, group);
+        List<CompletableFuture<List<Vehicle>>> members = group.close();
+        if (members == null) {
+            return;
+        }
+        try {
+            List<Vehicle> ranked = ranker.apply(strategy, members.size() + candidatesPerRequest - 1);
+            //The vehicles ranked after the one of every member are spares for all of them
+            List<Vehicle> spares = ranked.subList(Math.min(members.size(), ranked.size()), ranked.size());
+            for (int i = 0; i < members.size(); i++) {
+                List<Vehicle> candidates = new ArrayList<>(candidatesPerRequest);
+                if (i < ranked.size()) {
+                    candidates.add(ranked.get(i));
+                    candidates.addAll(spares);
+                }
+                members.get(i).complete(candidates);
+            }
+        } catch (RuntimeException e) {
+            members.forEach(member -> member.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * The requests waiting for the scan of one strategy.
+     */
+    private static final class Group {
+        private final List<CompletableFuture<List<Vehicle>>> members = new ArrayList<>();
+        private boolean closed;
+
+        /**
+         * Adds a member to the group.
+         * @return the future of the member, or null if the group was already flushed
+         */
+        synchronized CompletableFuture<List<Vehicle>> join() {
+            if (closed) {
+                return null;
+            }
+            CompletableFuture<List<Vehicle>> member = new CompletableFuture<>();
+            members.add(member);
+            return member;
+        }
+
+        synchronized boolean isFull() {
+            return members.size() >= MAX_GROUP_SIZE;
+        }
+
+        /**
+         * Closes the group to new members.
+         * @return the members, or null if the group was already closed
+         */
+        synchronized List<CompletableFuture<List<Vehicle>>> close() {
+            if (closed) {
+                return null;
+            }
+            closed = true;
+            return members;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package org.car.allocation.handler;
 
 import org.car.allocation.model.User;
 import org.car.allocation.service.UserService;
+import org.car.allocation.singleton.DatabaseUtil;
 import org.car.allocation.util.UserRole;
+import org.hibernate.stat.Statistics;
 import java.util.*;
 import java.text.MessageFormat;
 
@@ -62,6 +64,12 @@ public class MenuHandler {
                     userHandler.deleteUser();
                     break;
                 case 9:
+                    showCacheStatistics();
+                    break;
+                case 10:
+                    vehicleHandler.viewSpecificationProfiles();
+                    break;
+                case 11:
                     backToMenu = true;
                     break;
                 default:
@@ -70,6 +78,19 @@ public class MenuHandler {
             }
         }
     }
+    /**
+     * Displays the hit, miss and put counts of the second-level cache and the query cache
+     * since the application started.
+     */
+    private void showCacheStatistics() {
+        Statistics statistics = DatabaseUtil.getStatistics();
+        System.out.println(MessageFormat.format(messages.getString("cache.statistics.entity"),
+                statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                statistics.getSecondLevelCachePutCount()));
+        System.out.println(MessageFormat.format(messages.getString("cache.statistics.query"),
+                statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount()));
+    }
     /**
      * Displays the menu options available to a MANAGER user and processes the input.
      * The MANAGER can manage vehicle availability, maintenance, and allocate vehicles.
@@ -1,10 +1,27 @@
 package org.car.allocation.handler;
 
+import org.car.allocation.index.FleetColumns;
+import org.car.allocation.index.FleetIndex;
+import org.car.allocation.index.VehicleAttribute;
 import org.car.allocation.model.Vehicle;
+import org.car.allocation.specification.AndSpecification;
+import org.car.allocation.specification.CargoCapacitySpecification;
+import org.car.allocation.specification.CompiledSpecification;
+import org.car.allocation.specification.EngineTypeSpecification;
+import org.car.allocation.specification.FuelEfficientSpecification;
+import org.car.allocation.specification.OperationableSpecification;
+import org.car.allocation.specification.OrSpecification;
+import org.car.allocation.specification.PassengerCapacitySpecification;
+import org.car.allocation.specification.RefrigerationUnitSpecification;
 import org.car.allocation.specification.Specification;
+import org.car.allocation.specification.SpecificationCompiler;
+import org.car.allocation.specification.VehicleStatusSpecification;
 import org.car.allocation.strategy.AllocationStrategy;
+import org.car.allocation.util.VehicleStatus;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -16,7 +33,7 @@ public class VehicleAllocationHandler {
 
     public VehicleAllocationHandler(AllocationStrategy strategy, Specification<Vehicle> filterSpecification) {
         this.strategy = strategy;
-        this.filterSpecification = filterSpecification;
+        this.filterSpecification = SpecificationCompiler.compile(filterSpecification);
     }
 
     public void setStrategy(AllocationStrategy strategy) {
@@ -37,4 +54,136 @@ public class VehicleAllocationHandler {
         //Apply the allocation strategy on the filtered list
         return strategy.allocate(filteredVehicles);
     }
+
+    /**
+     * Finds the vehicles of the fleet index that satisfy both the filter specification and the
+     * specification of the strategy.
+     * <p>
+     * The query planner first looks for the most selective index that can narrow the fleet down:
+     * a range index for a threshold (fuel level, mileage, max speed, cargo or passenger capacity),
+     * or the bitset of a status, engine type or refrigeration flag. Among the operands of an AND
+     * it picks the one matching the fewest vehicles; an OR is indexable if all its operands are,
+     * by the union of their slots. The specifications are then evaluated on the columnar snapshot
+     * for the selected slots only, or for the whole fleet if nothing is indexable.
+     * </p>
+     *
+     * @param fleetIndex the fleet index to search.
+     * @return the matching vehicles.
+     */
+    public List<Vehicle> findCandidates(FleetIndex fleetIndex) {
+        Specification<Vehicle> strategySpecification = strategy.getSpecification();
+        AccessPath path = plan(filterSpecification, fleetIndex);
+        if (strategySpecification != null) {
+            path = AccessPath.moreSelective(path, plan(strategySpecification, fleetIndex));
+        }
+        FleetColumns columns = fleetIndex.columns();
+        BitSet rows = path == null ? columns.select(filterSpecification)
+                : columns.select(filterSpecification, path.slots());
+        if (strategySpecification != null) {
+            rows = columns.select(strategySpecification, rows);
+        }
+        return columns.vehiclesAt(rows);
+    }
+
+    /**
+     * Finds the cheapest way to narrow the fleet down to a superset of the vehicles satisfying
+     * a specification.
+     *
+     * @return the access path, or null if no index applies and the whole fleet must be scanned.
+     */
+    private AccessPath plan(Specification<Vehicle> specification, FleetIndex fleetIndex) {
+        if (specification instanceof CompiledSpecification<Vehicle> compiled) {
+            return plan(compiled.getSpecification(), fleetIndex);
+        }
+        if (specification instanceof AndSpecification<Vehicle> and) {
+            return AccessPath.moreSelective(plan(and.getSpec1(), fleetIndex), plan(and.getSpec2(), fleetIndex));
+        }
+        if (specification instanceof OrSpecification<Vehicle> or) {
+            return AccessPath.union(plan(or.getSpec1(), fleetIndex), plan(or.getSpec2(), fleetIndex));
+        }
+        if (specification instanceof OperationableSpecification operationable) {
+            return AccessPath.moreSelective(AccessPath.of(fleetIndex.slotsWithStatus(VehicleStatus.AVAILABLE)),
+                    AccessPath.atLeast(fleetIndex, VehicleAttribute.FUEL_LEVEL, operationable.getMinFuelLevel()));
+        }
+        if (specification instanceof CargoCapacitySpecification cargoCapacity) {
+            return AccessPath.atLeast(fleetIndex, VehicleAttribute.CARGO_CAPACITY, cargoCapacity.getMinCargoCapacity());
+        }
+        if (specification instanceof PassengerCapacitySpecification passengerCapacity) {
+            return AccessPath.atLeast(fleetIndex, VehicleAttribute.PASSENGER_CAPACITY,
+                    passengerCapacity.getMinPassengerCapacity());
+        }
+        if (specification instanceof FuelEfficientSpecification fuelEfficient) {
+            AccessPath path = AccessPath.moreSelective(
+                    AccessPath.of(fleetIndex.slotsWithEngineType(fuelEfficient.getPreferredEngineType())),
+                    AccessPath.atMost(fleetIndex, VehicleAttribute.MILEAGE, fuelEfficient.getMaxMileage()));
+            return AccessPath.moreSelective(path,
+                    AccessPath.atLeast(fleetIndex, VehicleAttribute.MAX_SPEED, fuelEfficient.getMinSpeed()));
+        }
+        if (specification instanceof EngineTypeSpecification engineType) {
+            return AccessPath.of(fleetIndex.slotsWithEngineType(engineType.getEngineType()));
+        }
+        if (specification instanceof VehicleStatusSpecification status) {
+            return AccessPath.of(fleetIndex.slotsWithStatus(status.getStatus()));
+        }
+        if (specification instanceof RefrigerationUnitSpecification refrigerationUnit) {
+            BitSet slots = fleetIndex.truckSlots();
+            if (refrigerationUnit.requiresRefrigeration()) {
+                slots.and(fleetIndex.refrigeratedSlots());
+            } else {
+                slots.andNot(fleetIndex.refrigeratedSlots());
+            }
+            return AccessPath.of(slots);
+        }
+        return null;
+    }
+
+    /**
+     * A way to read the candidate slots from the fleet index, with the number of slots it yields.
+     */
+    private static final class AccessPath {
+        private final int estimate;
+        private final Supplier<BitSet> slots;
+
+        private AccessPath(int estimate, Supplier<BitSet> slots) {
+            this.estimate = estimate;
+            this.slots = slots;
+        }
+
+        static AccessPath of(BitSet slots) {
+            return new AccessPath(slots.cardinality(), () -> slots);
+        }
+
+        static AccessPath atLeast(FleetIndex fleetIndex, VehicleAttribute attribute, double min) {
+            return new AccessPath(fleetIndex.countAtLeast(attribute, min), () -> fleetIndex.slotsAtLeast(attribute, min));
+        }
+
+        static AccessPath atMost(FleetIndex fleetIndex, VehicleAttribute attribute, double max) {
+            return new AccessPath(fleetIndex.countAtMost(attribute, max), () -> fleetIndex.slotsAtMost(attribute, max));
+        }
+
+        static AccessPath moreSelective(AccessPath first, AccessPath second) {
+            if (first == null) {
+                return second;
+            }
+            if (second == null) {
+                return first;
+            }
+            return second.estimate < first.estimate ? second : first;
+        }
+
+        static AccessPath union(AccessPath first, AccessPath second) {
+            if (first == null || second == null) {
+                return null;
+            }
+            return new AccessPath(first.estimate + second.estimate, () -> {
+                BitSet union = first.slots();
+                union.or(second.slots());
+                return union;
+            });
+        }
+
+        BitSet slots() {
+            return slots.get();
+        }
+    }
 }
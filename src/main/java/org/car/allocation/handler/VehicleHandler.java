@@ -202,6 +202,18 @@ public class VehicleHandler {
         pause();
     }
 
+    /**
+     * Displays the order in which each allocation specification evaluates its operands, as
+     * learned from the vehicles it was evaluated on.
+     */
+    public void viewSpecificationProfiles() {
+        System.out.println(messages.getString("specification.profiles"));
+        vehicleService.describeSpecifications().forEach((name, description) ->
+                System.out.println(MessageFormat.format(messages.getString("specification.profile"), name, description)));
+
+        pause();
+    }
+
     /**
      * Prompts the user to enter a vehicle ID and deletes the specified vehicle from the system.
      */
@@ -357,12 +369,15 @@ public class VehicleHandler {
 
     /**
      * Allocates a vehicle to the current user and assigns it to them.
+     * When no vehicle was allocated, tells whether no driver or no vehicle was available.
      */
     public void allocateVehicle() {
         Vehicle vehicle = vehicleService.allocateVehicle();
         if (vehicle != null) {
             System.out.println(messages.getString("vehicle.allocate") + vehicle);
         } else {
+            System.out.println(messages.getString(userService.findAvailableDriver().isPresent()
+                    ? "vehicle.allocate.strategy.error" : "no.available.driver"));
             System.out.println(messages.getString("vehicle.allocate.error"));
         }
 
@@ -448,10 +463,7 @@ public class VehicleHandler {
      * @param userRole the role of the user performing the action
      */
     public void putVehicleInMaintenanceByLicensePlate(String licensePlate, UserRole userRole) {
-        List<Vehicle> allVehicles = vehicleService.getAllVehicles();
-        Optional<Vehicle> vehicleOpt = allVehicles.stream()
-                .filter(vehicle -> vehicle.getLicensePlate().equalsIgnoreCase(licensePlate))
-                .findFirst();
+        Optional<Vehicle> vehicleOpt = vehicleService.findByLicensePlate(licensePlate);
 
         if (vehicleOpt.isPresent()) {
             Vehicle vehicle = vehicleOpt.get();
@@ -0,0 +1,185 @@
+package org.car.allocation.index;
+
+import org.car.allocation.model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Indexed priority queue of the eligible vehicles of the fleet, best first.
+ * <p>
+ * The queue is a binary heap with the heap position of each vehicle ID, so a vehicle can be
+ * moved or removed in O(log n) when it changes. It listens to the {@link FleetIndex}: a vehicle
+ * that is put is inserted, moved or dropped depending on whether it is still eligible, and a
+ * removed vehicle is dropped. The best vehicle is therefore read in O(1) and the best
+ * {@code k} in O(k log k), without looking at any vehicle that is not eligible.
+ * </p>
+ */
+public class CandidateQueue implements FleetIndex.Listener {
+    private final FleetIndex fleetIndex;
+    private final Predicate<Vehicle> eligibility;
+    private final Comparator<Vehicle> priority;
+    private final Map<Integer, Integer> positionsById = new HashMap<>();
+    private Vehicle[] heap = new Vehicle[16];
+    private int size;
+
+    private CandidateQueue(FleetIndex fleetIndex, Predicate<Vehicle> eligibility, Comparator<Vehicle> priority) {
+        this.fleetIndex = fleetIndex;
+        this.eligibility = eligibility;
+        //The ID breaks ties, so equally ranked vehicles always come out in the same order
+        this.priority = priority.thenComparingInt(Vehicle::getId);
+    }
+
+    /**
+     * Creates a queue of the eligible vehicles of a fleet index and keeps it up to date.
+     *
+     * @param fleetIndex the fleet index to follow
+     * @param eligibility tells which vehicles belong in the queue
+     * @param priority orders the vehicles, best first
+     * @return the queue, loaded with the vehicles currently indexed
+     */
+    public static CandidateQueue create(FleetIndex fleetIndex, Predicate<Vehicle> eligibility,
+                                        Comparator<Vehicle> priority) {
+        CandidateQueue queue = new CandidateQueue(fleetIndex, eligibility, priority);
+        synchronized (queue) {
+            //Changes made from now on wait for the queue to be loaded
+            queue.load(fleetIndex.addListener(queue));
+        }
+        return queue;
+    }
+
+    /**
+     * Stops following the fleet index; the queue is not updated anymore.
+     */
+    public void close() {
+        fleetIndex.removeListener(this);
+    }
+
+    @Override
+    public synchronized void vehiclePut(Vehicle vehicle) {
+        Integer position = positionsById.get(vehicle.getId());
+        if (!eligibility.test(vehicle)) {
+            if (position != null) {
+                removeAt(position);
+            }
+        } else if (position == null) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            place(vehicle, size++);
+            siftUp(size - 1);
+        } else {
+            place(vehicle, position);
+            siftDown(siftUp(position));
+        }
+    }
+
+    @Override
+    public synchronized void vehicleRemoved(Vehicle vehicle) {
+        Integer position = positionsById.get(vehicle.getId());
+        if (position != null) {
+            removeAt(position);
+        }
+    }
+
+    /**
+     * Retrieves the best eligible vehicle.
+     * @return the best vehicle, or null if no vehicle is eligible
+     */
+    public synchronized Vehicle peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    /**
+     * Retrieves the best eligible vehicles, best first, without removing them.
+     *
+     * @param count the maximum number of vehicles
+     * @return up to {@code count} vehicles, none if {@code count} is not positive
+     */
+    public synchronized List<Vehicle> peek(int count) {
+        if (size == 0 || count <= 0) {
+            return new ArrayList<>();
+        }
+        List<Vehicle> result = new ArrayList<>(Math.min(count, size));
+        //The heap positions still to visit; a position's children are only worse than itself
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((a, b) -> priority.compare(heap[a], heap[b]));
+        frontier.add(0);
+        while (!frontier.isEmpty() && result.size() < count) {
+            int position = frontier.poll();
+            result.add(heap[position]);
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++) {
+                frontier.add(child);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void load(List<Vehicle> vehicles) {
+        heap = new Vehicle[Math.max(16, vehicles.size())];
+        for (Vehicle vehicle : vehicles) {
+            if (eligibility.test(vehicle)) {
+                place(vehicle, size++);
+            }
+        }
+        for (int position = size / 2 - 1; position >= 0; position--) {
+            siftDown(position);
+        }
+    }
+
+    private void removeAt(int position) {
+        positionsById.remove(heap[position].getId());
+        size--;
+        if (position != size) {
+            place(heap[size], position);
+            heap[size] = null;
+            siftDown(siftUp(position));
+        } else {
+            heap[size] = null;
+        }
+    }
+
+    private int siftUp(int position) {
+        Vehicle vehicle = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (priority.compare(vehicle, heap[parent]) >= 0) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(vehicle, position);
+        return position;
+    }
+
+    private void siftDown(int position) {
+        Vehicle vehicle = heap[position];
+        while (2 * position + 1 < size) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && priority.compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (priority.compare(heap[child], vehicle) >= 0) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(vehicle, position);
+    }
+
+    private void place(Vehicle vehicle, int position) {
+        heap[position] = vehicle;
+        positionsById.put(vehicle.getId(), position);
+    }
+}
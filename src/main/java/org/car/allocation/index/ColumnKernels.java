@@ -0,0 +1,103 @@
+package org.car.allocation.index;
+
+/**
+ * Comparison kernels over the primitive columns of a {@link FleetColumns} snapshot, used by the
+ * column scans of the specifications.
+ * <p>
+ * Each kernel compares one block of 64 rows, starting at {@code base}, against a constant and
+ * returns the bitmask of the rows in {@code mask} that pass. When the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}, dense blocks are compared with SIMD instructions
+ * through the Vector API; otherwise, or when the system property {@code fleet.vector.disabled}
+ * is true, the kernels fall back to a scalar loop over the set bits of the mask.
+ * </p>
+ */
+public final class ColumnKernels {
+    private static final Kernels KERNELS = load();
+
+    private ColumnKernels() {}
+
+    /**
+     * Tells whether the kernels run on the Vector API.
+     * @return true if SIMD kernels are in use, false for the scalar fallback
+     */
+    public static boolean isVectorized() {
+        return KERNELS instanceof VectorKernels;
+    }
+
+    /**
+     * Selects the rows whose value is at least the given minimum.
+     *
+     * @param column the column
+     * @param base the first row of the block, a multiple of 64
+     * @param mask the rows of the block to compare
+     * @param min the minimum value
+     * @return the rows of the mask with {@code column[row] >= min}
+     */
+    public static long atLeast(double[] column, int base, long mask, double min) {
+        return KERNELS.atLeast(column, base, mask, min);
+    }
+
+    /**
+     * Selects the rows whose value is at most the given maximum.
+     *
+     * @param column the column
+     * @param base the first row of the block, a multiple of 64
+     * @param mask the rows of the block to compare
+     * @param max the maximum value
+     * @return the rows of the mask with {@code column[row] <= max}
+     */
+    public static long atMost(double[] column, int base, long mask, double max) {
+        return KERNELS.atMost(column, base, mask, max);
+    }
+
+    /**
+     * Selects the rows whose value is at least the given minimum.
+     *
+     * @param column the column
+     * @param base the first row of the block, a multiple of 64
+     * @param mask the rows of the block to compare
+     * @param min the minimum value
+     * @return the rows of the mask with {@code column[row] >= min}
+     */
+    public static long atLeast(int[] column, int base, long mask, int min) {
+        return KERNELS.atLeast(column, base, mask, min);
+    }
+
+    /**
+     * Selects the rows whose value equals the given one, e.g. the ordinal of a status.
+     *
+     * @param column the column
+     * @param base the first row of the block, a multiple of 64
+     * @param mask the rows of the block to compare
+     * @param value the value
+     * @return the rows of the mask with {@code column[row] == value}
+     */
+    public static long equalTo(byte[] column, int base, long mask, byte value) {
+        return KERNELS.equalTo(column, base, mask, value);
+    }
+
+    private static Kernels load() {
+        if (!Boolean.getBoolean("fleet.vector.disabled")
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorKernels();
+            } catch (LinkageError e) {
+                //The module is present but cannot be used on this platform
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * The operations behind the kernels, implemented once with plain loops and once with vectors.
+     */
+    interface Kernels {
+        long atLeast(double[] column, int base, long mask, double min);
+
+        long atMost(double[] column, int base, long mask, double max);
+
+        long atLeast(int[] column, int base, long mask, int min);
+
+        long equalTo(byte[] column, int base, long mask, byte value);
+    }
+}
@@ -0,0 +1,94 @@
+package org.car.allocation.index;
+
+import org.car.allocation.model.Car;
+import org.car.allocation.model.Truck;
+import org.car.allocation.model.Vehicle;
+import org.car.allocation.specification.CargoCapacitySpecification;
+import org.car.allocation.specification.FuelEfficientSpecification;
+import org.car.allocation.specification.OperationableSpecification;
+import org.car.allocation.specification.Specification;
+import org.car.allocation.util.EngineType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the column scans of the built-in specifications on a synthetic fleet snapshot, and
+ * checks that they select the same rows as {@code isSatisfiedBy}.
+ * <p>
+ * The kernels are chosen once per JVM (see {@link ColumnKernels}), so the vectorized and the
+ * scalar scans are measured by two runs:
+ * <pre>
+ * mvn -B compile exec:exec -Dapp.mainClass=org.car.allocation.index.ColumnScanBenchmark
+ * mvn -B compile exec:exec -Dapp.mainClass=org.car.allocation.index.ColumnScanBenchmark -Dapp.jvmArgs=-Dfleet.vector.disabled=true
+ * </pre>
+ * The first argument, if any, is the number of rows (4,000,000 by default).
+ * </p>
+ */
+public final class ColumnScanBenchmark {
+    private static final int DEFAULT_ROWS = 4_000_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 20;
+
+    private ColumnScanBenchmark() {}
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        List<Vehicle> vehicles = syntheticFleet(rows);
+        BitSet occupied = new BitSet(rows);
+        occupied.set(0, rows);
+        FleetColumns columns = new FleetColumns(vehicles, occupied);
+
+        System.out.printf(Locale.ROOT, "%d rows, %s kernels%n", rows,
+                ColumnKernels.isVectorized() ? "vectorized" : "scalar");
+        Map<String, Specification<Vehicle>> specifications = Map.of(
+                "OperationableSpecification", new OperationableSpecification(50.0),
+                "CargoCapacitySpecification", new CargoCapacitySpecification(1000.0),
+                "FuelEfficientSpecification", new FuelEfficientSpecification(EngineType.PETROL, 150000, 100));
+        specifications.forEach((name, specification) -> {
+            BitSet selected = columns.select(specification);
+            for (int row = 0; row < rows; row++) {
+                if (selected.get(row) != specification.isSatisfiedBy(vehicles.get(row))) {
+                    throw new IllegalStateException(name + " selects row " + row + " unlike isSatisfiedBy");
+                }
+            }
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                columns.select(specification);
+            }
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                columns.select(specification);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf(Locale.ROOT, "%-28s %8.2f ms (best of %d), %d rows selected%n",
+                    name, best / 1e6, MEASURED_ROUNDS, selected.cardinality());
+        });
+    }
+
+    /**
+     * Builds a fleet of available cars and trucks with uniformly random attributes, the same on every run.
+     */
+    private static List<Vehicle> syntheticFleet(int rows) {
+        Random random = new Random(42);
+        EngineType[] engineTypes = EngineType.values();
+        List<Vehicle> vehicles = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            EngineType engineType = engineTypes[random.nextInt(engineTypes.length)];
+            double fuelLevel = random.nextInt(101);
+            double maxSpeed = 60 + random.nextInt(140);
+            double mileage = random.nextInt(300_000);
+            Vehicle vehicle = random.nextBoolean()
+                    ? new Car("C" + row, "Bench", fuelLevel, maxSpeed, engineType,
+                            2 + random.nextInt(7), 1 + random.nextInt(10), mileage)
+                    : new Truck("T" + row, "Bench", fuelLevel, maxSpeed, engineType,
+                            random.nextInt(2000), random.nextBoolean(), mileage);
+            vehicles.add(vehicle);
+        }
+        return vehicles;
+    }
+}
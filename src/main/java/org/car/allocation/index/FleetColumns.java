@@ -0,0 +1,182 @@
+package org.car.allocation.index;
+
+import org.car.allocation.model.Car;
+import org.car.allocation.model.Truck;
+import org.car.allocation.model.Vehicle;
+import org.car.allocation.specification.Specification;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Read-only columnar snapshot of the fleet, taken from the {@link FleetIndex}.
+ * Each attribute is stored in its own primitive array (struct of arrays) and row {@code i}
+ * of every array describes the vehicle in slot {@code i} of the index. Specifications scan
+ * these arrays sequentially, 64 rows at a time, instead of calling getters on vehicle objects
+ * spread over the heap.
+ * <p>
+ * Attributes that do not apply to a vehicle type are 0 (e.g. the cargo capacity of a car);
+ * the {@link #kind()} column tells cars and trucks apart. Status and engine type hold the
+ * ordinal of the enum constant. The column arrays are shared with every reader of the
+ * snapshot and must not be modified.
+ * </p>
+ */
+public class FleetColumns {
+    public static final byte KIND_NONE = 0;
+    public static final byte KIND_CAR = 1;
+    public static final byte KIND_TRUCK = 2;
+
+    private final int rowCount;
+    private final Vehicle[] vehicles;
+    private final BitSet occupied;
+    private final double[] fuelLevel;
+    private final double[] mileage;
+    private final double[] maxSpeed;
+    private final double[] cargoCapacity;
+    private final int[] passengerCapacity;
+    private final int[] comfortLevel;
+    private final byte[] status;
+    private final byte[] engineType;
+    private final byte[] kind;
+    private final byte[] refrigerated;
+
+    /**
+     * Copies the attributes of the given slots into columns.
+     *
+     * @param slots the vehicles by slot; empty slots are null
+     * @param occupied the occupied slots
+     */
+    FleetColumns(List<Vehicle> slots, BitSet occupied) {
+        this.rowCount = slots.size();
+        this.vehicles = slots.toArray(new Vehicle[0]);
+        this.occupied = (BitSet) occupied.clone();
+        this.fuelLevel = new double[rowCount];
+        this.mileage = new double[rowCount];
+        this.maxSpeed = new double[rowCount];
+        this.cargoCapacity = new double[rowCount];
+        this.passengerCapacity = new int[rowCount];
+        this.comfortLevel = new int[rowCount];
+        this.status = new byte[rowCount];
+        this.engineType = new byte[rowCount];
+        this.kind = new byte[rowCount];
+        this.refrigerated = new byte[rowCount];
+        for (int row = occupied.nextSetBit(0); row >= 0 && row < rowCount; row = occupied.nextSetBit(row + 1)) {
+            Vehicle vehicle = vehicles[row];
+            fuelLevel[row] = vehicle.getFuelLevel();
+            mileage[row] = vehicle.getMileage();
+            maxSpeed[row] = vehicle.getMaxSpeed();
+            status[row] = (byte) vehicle.getVehicleStatus().ordinal();
+            engineType[row] = (byte) vehicle.getEngineType().ordinal();
+            if (vehicle instanceof Car car) {
+                kind[row] = KIND_CAR;
+                passengerCapacity[row] = car.getPassengerCapacity();
+                comfortLevel[row] = car.getComfortLevel();
+            } else if (vehicle instanceof Truck truck) {
+                kind[row] = KIND_TRUCK;
+                cargoCapacity[row] = truck.getCargoCapacity();
+                refrigerated[row] = (byte) (truck.hasRefrigerationUnit() ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Selects the rows that satisfy a specification among all vehicles of the snapshot.
+     * @param specification the criteria the vehicles must satisfy
+     * @return the matching rows
+     */
+    public BitSet select(Specification<Vehicle> specification) {
+        return select(specification, occupied);
+    }
+
+    /**
+     * Selects the rows that satisfy a specification among the given candidate rows, e.g. the
+     * slots of the available vehicles taken from the {@link FleetIndex}. The candidates are
+     * scanned in blocks of 64 rows, one {@code long} mask per block.
+     *
+     * @param specification the criteria the vehicles must satisfy
+     * @param candidates the rows to consider
+     * @return the matching candidate rows
+     */
+    public BitSet select(Specification<Vehicle> specification, BitSet candidates) {
+        long[] words = candidates.toLongArray();
+        long[] occupiedWords = occupied.toLongArray();
+        int blocks = Math.min(words.length, occupiedWords.length);
+        long[] result = new long[blocks];
+        for (int block = 0; block < blocks; block++) {
+            long mask = words[block] & occupiedWords[block];
+            if (mask != 0) {
+                result[block] = specification.scan(this, block << 6, mask);
+            }
+        }
+        return BitSet.valueOf(result);
+    }
+
+    /**
+     * Retrieves the vehicles in the given rows.
+     * @param rows the rows, e.g. the result of {@link #select(Specification)}
+     * @return the vehicles, ordered by row
+     */
+    public List<Vehicle> vehiclesAt(BitSet rows) {
+        List<Vehicle> result = new ArrayList<>(rows.cardinality());
+        for (int row = rows.nextSetBit(0); row >= 0 && row < rowCount; row = rows.nextSetBit(row + 1)) {
+            if (occupied.get(row)) {
+                result.add(vehicles[row]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the vehicle in a row, for evaluators that need the whole object.
+     * @param row the row
+     * @return the vehicle, or null if the row is empty
+     */
+    public Vehicle vehicleAt(int row) {
+        return vehicles[row];
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public double[] fuelLevel() {
+        return fuelLevel;
+    }
+
+    public double[] mileage() {
+        return mileage;
+    }
+
+    public double[] maxSpeed() {
+        return maxSpeed;
+    }
+
+    public double[] cargoCapacity() {
+        return cargoCapacity;
+    }
+
+    public int[] passengerCapacity() {
+        return passengerCapacity;
+    }
+
+    public int[] comfortLevel() {
+        return comfortLevel;
+    }
+
+    public byte[] status() {
+        return status;
+    }
+
+    public byte[] engineType() {
+        return engineType;
+    }
+
+    public byte[] kind() {
+        return kind;
+    }
+
+    public byte[] refrigerated() {
+        return refrigerated;
+    }
+}
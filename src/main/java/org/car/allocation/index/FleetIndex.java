@@ -0,0 +1,506 @@
+package org.car.allocation.index;
+
+import org.car.allocation.model.Car;
+import org.car.allocation.model.Truck;
+import org.car.allocation.model.Vehicle;
+import org.car.allocation.repository.VehicleRepository;
+import org.car.allocation.specification.Specification;
+import org.car.allocation.util.EngineType;
+import org.car.allocation.util.VehicleStatus;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the whole fleet, shared by the application.
+ * Every vehicle is kept resident in a slot, and for each status, engine type, vehicle type and
+ * refrigeration flag the index holds a bitset of the slots that have it. Questions such as
+ * "which refrigerated diesel trucks are available" are answered by AND-ing a few bitsets
+ * instead of scanning the vehicle tables. Each {@link VehicleAttribute} also has a sorted
+ * {@link RangeIndex}, which answers threshold questions such as "fuel level at least 50" by
+ * binary search.
+ * <p>
+ * The index is loaded from the database on first use and then kept up to date by
+ * {@link org.car.allocation.service.VehicleService} on every write. Vehicles returned by the
+ * index are the resident instances: they must be changed only through the service.
+ * </p>
+ */
+public class FleetIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Integer> slotsById = new HashMap<>();
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final BitSet occupied = new BitSet();
+    private final Map<VehicleStatus, BitSet> byStatus = new EnumMap<>(VehicleStatus.class);
+    private final Map<EngineType, BitSet> byEngineType = new EnumMap<>(EngineType.class);
+    private final BitSet cars = new BitSet();
+    private final BitSet trucks = new BitSet();
+    private final BitSet refrigerated = new BitSet();
+    private final Map<VehicleAttribute, RangeIndex> ranges = new EnumMap<>(VehicleAttribute.class);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile FleetColumns columns;
+
+    FleetIndex() {
+        for (VehicleStatus status : VehicleStatus.values()) {
+            byStatus.put(status, new BitSet());
+        }
+        for (EngineType engineType : EngineType.values()) {
+            byEngineType.put(engineType, new BitSet());
+        }
+        for (VehicleAttribute attribute : VehicleAttribute.values()) {
+            ranges.put(attribute, new RangeIndex());
+        }
+    }
+
+    /**
+     * Provides the shared index, loading every vehicle from the database on first call.
+     * @return the fleet index
+     */
+    public static FleetIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Adds a vehicle to the index, or replaces the indexed copy of a vehicle with the same ID.
+     * @param vehicle the vehicle as it is stored in the database
+     */
+    public void put(Vehicle vehicle) {
+        put(vehicle, true);
+    }
+
+    /**
+     * Adds or replaces a vehicle; the range indexes are left out while the whole fleet is loaded.
+     */
+    private void put(Vehicle vehicle, boolean updateRanges) {
+        lock.writeLock().lock();
+        try {
+            columns = null;
+            Integer slot = slotsById.get(vehicle.getId());
+            if (slot == null) {
+                slot = occupied.nextClearBit(0);
+                slotsById.put(vehicle.getId(), slot);
+                occupied.set(slot);
+                if (slot == vehicles.size()) {
+                    vehicles.add(vehicle);
+                } else {
+                    vehicles.set(slot, vehicle);
+                }
+            } else {
+                clearSlot(slot);
+                vehicles.set(slot, vehicle);
+            }
+            byStatus.get(vehicle.getVehicleStatus()).set(slot);
+            byEngineType.get(vehicle.getEngineType()).set(slot);
+            if (vehicle instanceof Car) {
+                cars.set(slot);
+            } else if (vehicle instanceof Truck truck) {
+                trucks.set(slot);
+                refrigerated.set(slot, truck.hasRefrigerationUnit());
+            }
+            if (updateRanges) {
+                for (VehicleAttribute attribute : VehicleAttribute.values()) {
+                    if (attribute.appliesTo(vehicle)) {
+                        ranges.get(attribute).put(slot, attribute.valueOf(vehicle));
+                    }
+                }
+            }
+            for (Listener listener : listeners) {
+                listener.vehiclePut(vehicle);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces several vehicles.
+     * @param vehicles the vehicles as they are stored in the database
+     */
+    public void putAll(Collection<? extends Vehicle> vehicles) {
+        for (Vehicle vehicle : vehicles) {
+            put(vehicle);
+        }
+    }
+
+    /**
+     * Removes a vehicle from the index. Its slot is reused by the next vehicle added.
+     * @param id the ID of the vehicle to remove
+     */
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            columns = null;
+            Integer slot = slotsById.remove(id);
+            if (slot != null) {
+                Vehicle vehicle = vehicles.get(slot);
+                clearSlot(slot);
+                vehicles.set(slot, null);
+                occupied.clear(slot);
+                for (Listener listener : listeners) {
+                    listener.vehicleRemoved(vehicle);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes several vehicles from the index.
+     * @param ids the IDs of the vehicles to remove
+     */
+    public void removeAll(Collection<Integer> ids) {
+        for (int id : ids) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Registers a listener to be told about every later change of the index.
+     * The registration and the returned snapshot are taken under the write lock, so the
+     * listener sees every change made after the snapshot and none made before it.
+     *
+     * @param listener the listener; it is called under the write lock and must not block
+     * @return the vehicles indexed when the listener was registered
+     */
+    public List<Vehicle> addListener(Listener listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            return collect(occupied);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Finds an indexed vehicle by its ID.
+     * @param id the ID of the vehicle
+     * @return an Optional containing the vehicle, or an empty Optional if it is not indexed
+     */
+    public Optional<Vehicle> get(int id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsById.get(id);
+            return slot == null ? Optional.empty() : Optional.of(vehicles.get(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the vehicles matching all of the given attributes; a null attribute matches any value.
+     * For example {@code find(VehicleStatus.AVAILABLE, EngineType.DIESEL, true)} returns the available
+     * refrigerated diesel trucks.
+     *
+     * @param status the required status, or null
+     * @param engineType the required engine type, or null
+     * @param refrigerated true for refrigerated trucks only, false for vehicles without a refrigeration
+     *                     unit (including cars), or null
+     * @return the matching vehicles, ordered by slot
+     */
+    public List<Vehicle> find(VehicleStatus status, EngineType engineType, Boolean refrigerated) {
+        lock.readLock().lock();
+        try {
+            BitSet slots = (BitSet) occupied.clone();
+            if (status != null) {
+                slots.and(byStatus.get(status));
+            }
+            if (engineType != null) {
+                slots.and(byEngineType.get(engineType));
+            }
+            if (refrigerated != null) {
+                if (refrigerated) {
+                    slots.and(this.refrigerated);
+                } else {
+                    slots.andNot(this.refrigerated);
+                }
+            }
+            return collect(slots);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the vehicles that satisfy a specification, evaluated on a columnar snapshot
+     * of the fleet.
+     * @param specification the criteria the vehicles must satisfy
+     * @return the matching vehicles, ordered by slot
+     */
+    public List<Vehicle> find(Specification<Vehicle> specification) {
+        FleetColumns snapshot = columns();
+        return snapshot.vehiclesAt(snapshot.select(specification));
+    }
+
+    /**
+     * Provides a columnar snapshot of the fleet, with one row per slot of this index.
+     * The snapshot is built on first request after a change and shared until the next change.
+     * @return the columnar snapshot
+     */
+    public FleetColumns columns() {
+        FleetColumns snapshot = columns;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        lock.readLock().lock();
+        try {
+            snapshot = new FleetColumns(vehicles, occupied);
+            //A writer cannot run while the read lock is held, so the snapshot is current
+            columns = snapshot;
+            return snapshot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the vehicles with the given status.
+     * @param status the status of the vehicles
+     * @return the vehicles with the status, ordered by slot
+     */
+    public List<Vehicle> findByStatus(VehicleStatus status) {
+        return find(status, null, null);
+    }
+
+    /**
+     * Retrieves the slots of the vehicles with the given status.
+     * @param status the status of the vehicles
+     * @return a copy of the bitset of the slots
+     */
+    public BitSet slotsWithStatus(VehicleStatus status) {
+        return copyOf(byStatus.get(status));
+    }
+
+    /**
+     * Retrieves the slots of the vehicles with the given engine type.
+     * @param engineType the engine type of the vehicles
+     * @return a copy of the bitset of the slots
+     */
+    public BitSet slotsWithEngineType(EngineType engineType) {
+        return copyOf(byEngineType.get(engineType));
+    }
+
+    /**
+     * Retrieves the slots of the cars.
+     * @return a copy of the bitset of the slots
+     */
+    public BitSet carSlots() {
+        return copyOf(cars);
+    }
+
+    /**
+     * Retrieves the slots of the trucks.
+     * @return a copy of the bitset of the slots
+     */
+    public BitSet truckSlots() {
+        return copyOf(trucks);
+    }
+
+    /**
+     * Retrieves the slots of the trucks with a refrigeration unit.
+     * @return a copy of the bitset of the slots
+     */
+    public BitSet refrigeratedSlots() {
+        return copyOf(refrigerated);
+    }
+
+    /**
+     * Retrieves the vehicles in the given slots.
+     * @param slots the slots, e.g. the result of AND-ing bitsets of this index
+     * @return the vehicles in the slots that are occupied, ordered by slot
+     */
+    public List<Vehicle> vehiclesAt(BitSet slots) {
+        lock.readLock().lock();
+        try {
+            BitSet occupiedSlots = (BitSet) slots.clone();
+            occupiedSlots.and(occupied);
+            return collect(occupiedSlots);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the vehicles with a value of at least the given minimum for an attribute.
+     * @param attribute the attribute
+     * @param min the minimum value
+     * @return the number of vehicles the attribute applies to with a value of at least {@code min}
+     */
+    public int countAtLeast(VehicleAttribute attribute, double min) {
+        lock.readLock().lock();
+        try {
+            return ranges.get(attribute).countAtLeast(min);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the vehicles with a value of at most the given maximum for an attribute.
+     * @param attribute the attribute
+     * @param max the maximum value
+     * @return the number of vehicles the attribute applies to with a value of at most {@code max}
+     */
+    public int countAtMost(VehicleAttribute attribute, double max) {
+        lock.readLock().lock();
+        try {
+            return ranges.get(attribute).countAtMost(max);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the slots of the vehicles with a value of at least the given minimum for an attribute.
+     * @param attribute the attribute
+     * @param min the minimum value
+     * @return the slots
+     */
+    public BitSet slotsAtLeast(VehicleAttribute attribute, double min) {
+        lock.readLock().lock();
+        try {
+            return ranges.get(attribute).slotsAtLeast(min);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the slots of the vehicles with a value of at most the given maximum for an attribute.
+     * @param attribute the attribute
+     * @param max the maximum value
+     * @return the slots
+     */
+    public BitSet slotsAtMost(VehicleAttribute attribute, double max) {
+        lock.readLock().lock();
+        try {
+            return ranges.get(attribute).slotsAtMost(max);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of indexed vehicles.
+     * @return the number of vehicles
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet copyOf(BitSet bitSet) {
+        lock.readLock().lock();
+        try {
+            return (BitSet) bitSet.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Vehicle> collect(BitSet slots) {
+        List<Vehicle> result = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            result.add(vehicles.get(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Clears a slot from every attribute bitset; the caller holds the write lock.
+     */
+    private void clearSlot(int slot) {
+        for (BitSet slots : byStatus.values()) {
+            slots.clear(slot);
+        }
+        for (BitSet slots : byEngineType.values()) {
+            slots.clear(slot);
+        }
+        cars.clear(slot);
+        trucks.clear(slot);
+        refrigerated.clear(slot);
+        for (RangeIndex range : ranges.values()) {
+            range.remove(slot);
+        }
+    }
+
+    /**
+     * Loads every range index at once from the indexed vehicles.
+     */
+    private void rebuildRanges() {
+        lock.writeLock().lock();
+        try {
+            int count = occupied.cardinality();
+            for (VehicleAttribute attribute : VehicleAttribute.values()) {
+                int[] slots = new int[count];
+                double[] values = new double[count];
+                int size = 0;
+                for (int slot = occupied.nextSetBit(0); slot >= 0; slot = occupied.nextSetBit(slot + 1)) {
+                    Vehicle vehicle = vehicles.get(slot);
+                    if (attribute.appliesTo(vehicle)) {
+                        slots[size] = slot;
+                        values[size++] = attribute.valueOf(vehicle);
+                    }
+                }
+                ranges.get(attribute).rebuild(slots, values, size);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Receives the changes of the index, e.g. to keep a structure derived from the fleet up to date.
+     */
+    public interface Listener {
+        /**
+         * Called when a vehicle is added or replaces the indexed copy with the same ID.
+         * @param vehicle the vehicle as it is now indexed
+         */
+        void vehiclePut(Vehicle vehicle);
+
+        /**
+         * Called when a vehicle is removed from the index.
+         * @param vehicle the vehicle as it was indexed
+         */
+        void vehicleRemoved(Vehicle vehicle);
+    }
+
+    /**
+     * Loads the index on first access to {@link #getInstance()}.
+     */
+    private static class Holder {
+        private static final FleetIndex INSTANCE = load();
+
+        private static FleetIndex load() {
+            FleetIndex index = new FleetIndex();
+            try (Stream<Vehicle> vehicles = new VehicleRepository<>(Vehicle.class).streamAll(0)) {
+                vehicles.forEach(vehicle -> index.put(vehicle, false));
+            }
+            index.rebuildRanges();
+            return index;
+        }
+    }
+}
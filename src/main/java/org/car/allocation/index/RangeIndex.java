@@ -0,0 +1,214 @@
+package org.car.allocation.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sorted index of one numeric vehicle attribute, kept in primitive arrays.
+ * The entries are (value, slot) pairs sorted by value, then by slot, so the slots with a value
+ * at least (or at most) a bound form a contiguous range found by binary search. Adding or
+ * removing an entry shifts the entries after it; a whole fleet is loaded with {@link #rebuild}.
+ * <p>
+ * The index is not thread-safe: {@link FleetIndex} guards it with its own lock.
+ * </p>
+ */
+class RangeIndex {
+    private double[] values = new double[16];
+    private int[] slots = new int[16];
+    private int size;
+    //The value each indexed slot was added with, to find its entry again on removal
+    private double[] valueBySlot = new double[16];
+    private final BitSet indexed = new BitSet();
+
+    /**
+     * Adds a slot with its value, or moves it if it is already indexed.
+     *
+     * @param slot the slot of the vehicle
+     * @param value the value of the attribute
+     */
+    void put(int slot, double value) {
+        remove(slot);
+        int position = position(value, slot);
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        System.arraycopy(slots, position, slots, position + 1, size - position);
+        values[position] = value;
+        slots[position] = slot;
+        size++;
+        if (slot >= valueBySlot.length) {
+            valueBySlot = Arrays.copyOf(valueBySlot, Math.max(slot + 1, valueBySlot.length * 2));
+        }
+        valueBySlot[slot] = value;
+        indexed.set(slot);
+    }
+
+    /**
+     * Removes a slot; does nothing if it is not indexed.
+     *
+     * @param slot the slot of the vehicle
+     */
+    void remove(int slot) {
+        if (!indexed.get(slot)) {
+            return;
+        }
+        int position = position(valueBySlot[slot], slot);
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+        size--;
+        indexed.clear(slot);
+    }
+
+    /**
+     * Replaces the whole content of the index.
+     *
+     * @param slots the slots, in increasing order
+     * @param values the value of each slot
+     * @param count the number of slots
+     */
+    void rebuild(int[] slots, double[] values, int count) {
+        this.values = Arrays.copyOf(values, Math.max(count, 16));
+        this.slots = Arrays.copyOf(slots, Math.max(count, 16));
+        this.size = count;
+        //A stable sort by value keeps equal values ordered by slot
+        sortByValue(this.values, this.slots, new double[count], new int[count], 0, count);
+        indexed.clear();
+        int maxSlot = count == 0 ? 0 : slots[count - 1];
+        valueBySlot = new double[Math.max(maxSlot + 1, 16)];
+        for (int i = 0; i < count; i++) {
+            valueBySlot[slots[i]] = values[i];
+            indexed.set(slots[i]);
+        }
+    }
+
+    /**
+     * Counts the slots with a value of at least the given minimum.
+     * @param min the minimum value
+     * @return the number of slots
+     */
+    int countAtLeast(double min) {
+        return size - lowerBound(min);
+    }
+
+    /**
+     * Counts the slots with a value of at most the given maximum.
+     * @param max the maximum value
+     * @return the number of slots
+     */
+    int countAtMost(double max) {
+        return upperBound(max);
+    }
+
+    /**
+     * Retrieves the slots with a value of at least the given minimum.
+     * @param min the minimum value
+     * @return the slots
+     */
+    BitSet slotsAtLeast(double min) {
+        return slotsBetween(lowerBound(min), size);
+    }
+
+    /**
+     * Retrieves the slots with a value of at most the given maximum.
+     * @param max the maximum value
+     * @return the slots
+     */
+    BitSet slotsAtMost(double max) {
+        return slotsBetween(0, upperBound(max));
+    }
+
+    int size() {
+        return size;
+    }
+
+    private BitSet slotsBetween(int from, int to) {
+        BitSet result = new BitSet();
+        for (int i = from; i < to; i++) {
+            result.set(slots[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the first entry with a value of at least the given one.
+     */
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first entry with a value greater than the given one.
+     */
+    private int upperBound(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the position of the (value, slot) entry, or where it would be inserted.
+     */
+    private int position(double value, int slot) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Double.compare(values[middle], value);
+            if (comparison < 0 || comparison == 0 && slots[middle] < slot) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sorts the range [from, to) of both arrays by value with a stable merge sort.
+     */
+    private static void sortByValue(double[] values, int[] slots, double[] valueBuffer, int[] slotBuffer,
+                                    int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sortByValue(values, slots, valueBuffer, slotBuffer, from, middle);
+        sortByValue(values, slots, valueBuffer, slotBuffer, middle, to);
+        if (Double.compare(values[middle - 1], values[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(values, from, valueBuffer, from, to - from);
+        System.arraycopy(slots, from, slotBuffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle && Double.compare(valueBuffer[left], valueBuffer[right]) <= 0) {
+                values[i] = valueBuffer[left];
+                slots[i] = slotBuffer[left++];
+            } else {
+                values[i] = valueBuffer[right];
+                slots[i] = slotBuffer[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.car.allocation.index;
+
+/**
+ * Column kernels that visit the set bits of the mask one by one.
+ * They are the fallback when the Vector API is not available, and the faster choice for
+ * blocks where only a few rows are still candidates.
+ */
+class ScalarKernels implements ColumnKernels.Kernels {
+    @Override
+    public long atLeast(double[] column, int base, long mask, double min) {
+        long result = 0;
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            if (column[base + Long.numberOfTrailingZeros(remaining)] >= min) {
+                result |= remaining & -remaining;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long atMost(double[] column, int base, long mask, double max) {
+        long result = 0;
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            if (column[base + Long.numberOfTrailingZeros(remaining)] <= max) {
+                result |= remaining & -remaining;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long atLeast(int[] column, int base, long mask, int min) {
+        long result = 0;
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            if (column[base + Long.numberOfTrailingZeros(remaining)] >= min) {
+                result |= remaining & -remaining;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long equalTo(byte[] column, int base, long mask, byte value) {
+        long result = 0;
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            if (column[base + Long.numberOfTrailingZeros(remaining)] == value) {
+                result |= remaining & -remaining;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package org.car.allocation.index;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Column kernels on the Vector API. A dense block is compared a whole vector of rows at a
+ * time, with the widest vectors the CPU supports, and the comparison masks are packed into
+ * the 64-bit result. Groups of rows without any candidate are skipped; sparse blocks and the
+ * last, partial block of a column go through the scalar kernels.
+ * <p>
+ * This class is only loaded when the {@code jdk.incubator.vector} module is present.
+ * </p>
+ */
+class VectorKernels extends ScalarKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    //Below this many candidates in a block, visiting them one by one is cheaper
+    private static final int MIN_DENSE_ROWS = 8;
+
+    @Override
+    public long atLeast(double[] column, int base, long mask, double min) {
+        if (!isDense(mask, base, column.length)) {
+            return super.atLeast(column, base, mask, min);
+        }
+        return compare(column, base, mask, VectorOperators.GE, min);
+    }
+
+    @Override
+    public long atMost(double[] column, int base, long mask, double max) {
+        if (!isDense(mask, base, column.length)) {
+            return super.atMost(column, base, mask, max);
+        }
+        return compare(column, base, mask, VectorOperators.LE, max);
+    }
+
+    @Override
+    public long atLeast(int[] column, int base, long mask, int min) {
+        if (!isDense(mask, base, column.length)) {
+            return super.atLeast(column, base, mask, min);
+        }
+        int lanes = INTS.length();
+        long laneMask = lanes == 64 ? -1L : (1L << lanes) - 1;
+        long result = 0;
+        for (int offset = 0; offset < 64; offset += lanes) {
+            if (((mask >>> offset) & laneMask) != 0) {
+                result |= IntVector.fromArray(INTS, column, base + offset)
+                        .compare(VectorOperators.GE, min).toLong() << offset;
+            }
+        }
+        return result & mask;
+    }
+
+    @Override
+    public long equalTo(byte[] column, int base, long mask, byte value) {
+        if (!isDense(mask, base, column.length)) {
+            return super.equalTo(column, base, mask, value);
+        }
+        int lanes = BYTES.length();
+        long laneMask = lanes == 64 ? -1L : (1L << lanes) - 1;
+        long result = 0;
+        for (int offset = 0; offset < 64; offset += lanes) {
+            if (((mask >>> offset) & laneMask) != 0) {
+                result |= ByteVector.fromArray(BYTES, column, base + offset)
+                        .compare(VectorOperators.EQ, value).toLong() << offset;
+            }
+        }
+        return result & mask;
+    }
+
+    private static long compare(double[] column, int base, long mask, VectorOperators.Comparison comparison,
+                                double bound) {
+        int lanes = DOUBLES.length();
+        long laneMask = (1L << lanes) - 1;
+        long result = 0;
+        for (int offset = 0; offset < 64; offset += lanes) {
+            if (((mask >>> offset) & laneMask) != 0) {
+                result |= DoubleVector.fromArray(DOUBLES, column, base + offset)
+                        .compare(comparison, bound).toLong() << offset;
+            }
+        }
+        return result & mask;
+    }
+
+    private static boolean isDense(long mask, int base, int length) {
+        return base + 64 <= length && Long.bitCount(mask) >= MIN_DENSE_ROWS;
+    }
+}
@@ -0,0 +1,45 @@
+package org.car.allocation.index;
+
+import org.car.allocation.model.Car;
+import org.car.allocation.model.Truck;
+import org.car.allocation.model.Vehicle;
+
+/**
+ * The numeric vehicle attributes the {@link FleetIndex} keeps a sorted {@link RangeIndex} on.
+ * Attributes of one vehicle type only (cargo capacity, passenger capacity) index that type only.
+ */
+public enum VehicleAttribute {
+    FUEL_LEVEL,
+    MILEAGE,
+    MAX_SPEED,
+    CARGO_CAPACITY,
+    PASSENGER_CAPACITY;
+
+    /**
+     * Tells whether a vehicle has this attribute.
+     * @param vehicle the vehicle
+     * @return true if the attribute applies to the type of the vehicle
+     */
+    public boolean appliesTo(Vehicle vehicle) {
+        return switch (this) {
+            case CARGO_CAPACITY -> vehicle instanceof Truck;
+            case PASSENGER_CAPACITY -> vehicle instanceof Car;
+            default -> true;
+        };
+    }
+
+    /**
+     * Reads this attribute from a vehicle it applies to.
+     * @param vehicle the vehicle
+     * @return the value of the attribute
+     */
+    public double valueOf(Vehicle vehicle) {
+        return switch (this) {
+            case FUEL_LEVEL -> vehicle.getFuelLevel();
+            case MILEAGE -> vehicle.getMileage();
+            case MAX_SPEED -> vehicle.getMaxSpeed();
+            case CARGO_CAPACITY -> ((Truck) vehicle).getCargoCapacity();
+            case PASSENGER_CAPACITY -> ((Car) vehicle).getPassengerCapacity();
+        };
+    }
+}
@@ -8,7 +8,10 @@ import org.car.allocation.util.EngineType;
  * and adds specific attributes for a car, such as passenger capacity.
  */
 @Entity
-@Table(name = "cars")
+@Table(name = "cars", indexes = {
+        @Index(name = "idx_cars_status_id", columnList = "vehicleStatus, id"),
+        @Index(name = "idx_cars_license_plate_key", columnList = "licensePlateKey")
+})
 public class Car extends Vehicle {
     @Column(nullable = false)
     private int passengerCapacity;
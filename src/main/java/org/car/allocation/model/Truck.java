@@ -8,7 +8,10 @@ import org.car.allocation.util.EngineType;
  * and adds specific attributes for a truck, such as cargo capacity.
  */
 @Entity
-@Table(name = "trucks")
+@Table(name = "trucks", indexes = {
+        @Index(name = "idx_trucks_status_id", columnList = "vehicleStatus, id"),
+        @Index(name = "idx_trucks_license_plate_key", columnList = "licensePlateKey")
+})
 public class Truck extends Vehicle {
     /**
      * The cargo capacity of the truck, representing the maximum weight it can carry.
@@ -5,14 +5,20 @@ import org.car.allocation.util.PermissionManager;
 import org.car.allocation.util.UserRole;
 import org.car.allocation.util.VehicleStatus;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 /**
  * The User class represents a user who is notified of vehicle status changes.
  * This class implements the VehicleObserver interface and defines the
  * behavior for receiving notifications when the vehicle's status changes.
+ * Users are kept in the second-level cache.
  */
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
 public class User implements VehicleObserver {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -47,6 +53,15 @@ public class User implements VehicleObserver {
     @JoinColumn(name = "truck_id", referencedColumnName = "id", nullable = true)
     private Truck truck;
 
+    /**
+     * The version of the user, incremented on every update, so that two concurrent
+     * allocations cannot both assign a vehicle to the same driver.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
+
     public User(UserRole role, String firstName, String lastName, String email, String phoneNumber, String username, String password, Car car, Truck truck) {
         this.role = role;
         this.firstName = firstName;
@@ -68,6 +83,10 @@ public class User implements VehicleObserver {
         return id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public UserRole getRole() {
         return role;
     }
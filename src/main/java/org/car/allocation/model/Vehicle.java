@@ -1,25 +1,38 @@
 package org.car.allocation.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
 import org.car.allocation.observer.VehicleObserver;
 import org.car.allocation.observer.VehicleStatusNotifier;
 import org.car.allocation.util.EngineType;
 import org.car.allocation.util.VehicleStatus;
 
 import java.util.List;
+import java.util.Locale;
 
 /**
  * The abstract Vehicle class represents a generic vehicle with basic attributes such as
  * license plate, model, fuel level, availability, and maintenance status. It also
  * supports the observer pattern to notify when the vehicle's availability changes.
+ * Each concrete vehicle type keeps its own table; queries against Vehicle are
+ * polymorphic and read all of them in a single statement.
+ * Vehicles of every type are kept in the second-level cache, so repeated lookups
+ * by ID are served from memory.
  */
-@MappedSuperclass
+@Entity
+@Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "vehicles")
+@GenericGenerator(name = "vehicle_id_generator", type = VehicleIdGenerator.class)
 public abstract class Vehicle {
     /**
-     * The unique identifier for the vehicle.
+     * The unique identifier for the vehicle, shared by all vehicle types.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "vehicle_id_generator")
     protected int id;
 
     /**
@@ -28,6 +41,12 @@ public abstract class Vehicle {
     @Column(nullable = false, unique = true)
     protected String licensePlate;
 
+    /**
+     * The license plate trimmed and in upper case, indexed for case-insensitive lookups.
+     */
+    @Column
+    protected String licensePlateKey;
+
     @Column(nullable = false)
     protected String model;
 
@@ -48,6 +67,15 @@ public abstract class Vehicle {
     @Column(nullable = false)
     protected EngineType engineType;
 
+    /**
+     * The version of the vehicle, incremented on every update. An update made from a
+     * stale copy of the vehicle fails instead of overwriting a concurrent change.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    protected long version;
+
     /**
      * A transient notifier for vehicle status changes, used to implement the observer pattern.
      */
@@ -58,6 +86,7 @@ public abstract class Vehicle {
 
     public Vehicle(String licensePlate, String model, double fuelLevel, double maxSpeed, EngineType engineType, double mileage) {
         this.licensePlate = licensePlate;
+        this.licensePlateKey = normalizeLicensePlate(licensePlate);
         this.model = model;
         this.fuelLevel = fuelLevel;
         this.engineType = engineType;
@@ -68,6 +97,10 @@ public abstract class Vehicle {
 
     public int getId() { return id; }
 
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Retrieves the license plate of the vehicle.
      * @return The license plate of the vehicle.
@@ -82,6 +115,26 @@ public abstract class Vehicle {
      */
     public void setLicensePlate(String licensePlate) {
         this.licensePlate = licensePlate;
+        this.licensePlateKey = normalizeLicensePlate(licensePlate);
+    }
+
+    /**
+     * Keeps the lookup key in line with the license plate before the vehicle is written.
+     */
+    @PrePersist
+    @PreUpdate
+    protected void updateLicensePlateKey() {
+        this.licensePlateKey = normalizeLicensePlate(licensePlate);
+    }
+
+    /**
+     * Converts a license plate to the form used for lookups, so that plates differing
+     * only in case or surrounding whitespace are found by the same key.
+     * @param licensePlate The license plate to normalize.
+     * @return The normalized license plate, or null if the license plate is null.
+     */
+    public static String normalizeLicensePlate(String licensePlate) {
+        return licensePlate == null ? null : licensePlate.trim().toUpperCase(Locale.ROOT);
     }
 
     public String getModel() {
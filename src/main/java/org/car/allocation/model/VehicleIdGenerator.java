@@ -0,0 +1,142 @@
+package org.car.allocation.model;
+
+import jakarta.transaction.Synchronization;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates vehicle identifiers that are unique across the whole Vehicle hierarchy,
+ * so a Car and a Truck never share an ID and both tables can be queried as one.
+ * <p>
+ * The counter is kept in the {@code id_generators} table and is advanced on the
+ * connection of the current session. SQLite allows a single writer only, so drawing
+ * IDs through a separate connection (as the standard table generator does) would
+ * block behind the transaction that is inserting the vehicles.
+ * </p>
+ * <p>
+ * IDs are reserved in blocks so that bulk inserts do not update the counter for every
+ * row: the first ID of a transaction reserves a block of one, and each following
+ * reservation doubles the block, up to {@link #MAX_BLOCK_SIZE}. A block belongs to the
+ * transaction that reserved it and is dropped when that transaction completes, because
+ * a rollback also undoes the reservation.
+ * </p>
+ */
+public class VehicleIdGenerator implements IdentifierGenerator {
+    private static final String SEQUENCE_NAME = "vehicles";
+    private static final int MAX_BLOCK_SIZE = 64;
+
+    private final Map<SharedSessionContractImplementor, Block> blocks = new ConcurrentHashMap<>();
+    private volatile boolean initialized;
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        Block block = blocks.get(session);
+        if (block == null || block.isExhausted()) {
+            int size = block == null ? 1 : Math.min(block.size * 2, MAX_BLOCK_SIZE);
+            Block reserved = session.doReturningWork(connection -> reserve(connection, size));
+            if (block == null) {
+                session.getTransactionCoordinator().getLocalSynchronizations()
+                        .registerSynchronization(new BlockRelease(session));
+            }
+            blocks.put(session, reserved);
+            block = reserved;
+        }
+        return block.next();
+    }
+
+    /**
+     * Advances the counter by the block size and returns the reserved block.
+     *
+     * @param connection the connection of the current session
+     * @param size the number of IDs to reserve
+     * @return the reserved block of IDs
+     */
+    private Block reserve(Connection connection, int size) throws SQLException {
+        if (!initialized) {
+            initialize(connection);
+        }
+        try (PreparedStatement update = connection.prepareStatement(
+                "update id_generators set next_val = next_val + ? where sequence_name = ?")) {
+            update.setInt(1, size);
+            update.setString(2, SEQUENCE_NAME);
+            update.executeUpdate();
+        }
+        try (PreparedStatement select = connection.prepareStatement(
+                "select next_val from id_generators where sequence_name = ?")) {
+            select.setString(1, SEQUENCE_NAME);
+            try (ResultSet resultSet = select.executeQuery()) {
+                resultSet.next();
+                int last = (int) resultSet.getLong(1);
+                return new Block(last - size + 1, size);
+            }
+        }
+    }
+
+    /**
+     * Creates the counter table if needed and seeds it with the highest ID already
+     * used by a car or a truck.
+     *
+     * @param connection the connection of the current session
+     */
+    private void initialize(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("create table if not exists id_generators "
+                    + "(sequence_name varchar(255) not null primary key, next_val bigint not null)");
+            statement.executeUpdate("insert or ignore into id_generators (sequence_name, next_val) "
+                    + "select '" + SEQUENCE_NAME + "', coalesce(max(id), 0) "
+                    + "from (select id from cars union all select id from trucks)");
+        }
+        initialized = true;
+    }
+
+    /**
+     * A contiguous range of reserved IDs handed out in order.
+     */
+    private static class Block {
+        private final int size;
+        private final int end;
+        private int next;
+
+        Block(int first, int size) {
+            this.size = size;
+            this.next = first;
+            this.end = first + size;
+        }
+
+        boolean isExhausted() {
+            return next >= end;
+        }
+
+        int next() {
+            return next++;
+        }
+    }
+
+    /**
+     * Drops the block of a session once its transaction has completed.
+     */
+    private class BlockRelease implements Synchronization {
+        private final SharedSessionContractImplementor session;
+
+        BlockRelease(SharedSessionContractImplementor session) {
+            this.session = session;
+        }
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            blocks.remove(session);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.car.allocation.pipeline;
+
+import org.car.allocation.handler.AllocationCoalescer;
+import org.car.allocation.model.Vehicle;
+import org.car.allocation.service.VehicleService;
+import org.car.allocation.strategy.AllocationRequest;
+import org.car.allocation.strategy.AllocationStrategy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Bounded pipeline that allocates vehicles for a stream of requests, for bursts of load.
+ * <p>
+ * The requests flow through six {@link PipelineStage}s, each with its own bounded queue and
+ * number of workers:
+ * <ol>
+ *     <li>validate: resolves the {@link AllocationStrategy} of the request</li>
+ *     <li>filter: joins the request to the scan of the candidates of its strategy, which the requests
+ *     with an equal strategy share through the {@link AllocationCoalescer} of the {@link VehicleService}
+ *     (see {@link VehicleService#rankCandidates(AllocationStrategy)})</li>
+ *     <li>rank: takes the candidates the shared scan ranked for the request, a different best
+ *     candidate for each request of the scan</li>
+ *     <li>reserve: puts first the best candidate no other request in flight has reserved</li>
+ *     <li>persist: claims a candidate and a driver in the database</li>
+ *     <li>notify: notifies the status observers of the {@link VehicleService} and completes the request</li>
+ * </ol>
+ * The stages are linked as {@link Flow.Publisher}s and {@link Flow.Subscriber}s, and each asks
+ * upstream for items only as it has room for them. A burst is held back in the queues, and
+ * {@link #submit(AllocationRequest)} blocks once the first one is full, instead of starting a
+ * thread per request: the threads are the fixed workers of the stages. The filtering stage does
+ * not wait for the scan, so that the requests of one coalescing window all join it while the
+ * ranking stage waits for the scans of the earlier ones. The persisting stage has a single
+ * worker since SQLite has a single writer; more would only retry on each other's locks.
+ * </p>
+ */
+public class AllocationPipeline implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int CPU_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int PERSIST_PARALLELISM = 1;
+
+    private final VehicleService<Vehicle> vehicleService;
+    //IDs of the vehicles reserved by requests between the reserve and the persist stages
+    private final Set<Integer> reservedIds = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sourceExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("allocation-submit").factory());
+    private final SubmissionPublisher<Allocation> source;
+    private final List<PipelineStage<Allocation, Allocation>> stages = new ArrayList<>();
+
+    /**
+     * Creates a pipeline whose stages can each hold {@value #DEFAULT_CAPACITY} requests.
+     * @param vehicleService the service that persists the allocations and notifies its observers of them.
+     */
+    public AllocationPipeline(VehicleService<Vehicle> vehicleService) {
+        this(vehicleService, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pipeline and starts the workers of its stages.
+     *
+     * @param vehicleService the service that persists the allocations and notifies its observers of them.
+     * @param capacity the number of requests each stage can hold.
+     */
+    public AllocationPipeline(VehicleService<Vehicle> vehicleService, int capacity) {
+        this.vehicleService = vehicleService;
+        this.source = new SubmissionPublisher<>(sourceExecutor, capacity);
+        Flow.Publisher<Allocation> upstream = source;
+        upstream = link(upstream, new PipelineStage<>("validate", 1, capacity, this::validate, this::drop));
+        upstream = link(upstream, new PipelineStage<>("filter", CPU_PARALLELISM, capacity, this::filter, this::drop));
+        upstream = link(upstream, new PipelineStage<>("rank", CPU_PARALLELISM, capacity, this::rank, this::drop));
+        upstream = link(upstream, new PipelineStage<>("reserve", 1, capacity, this::reserve, this::drop));
+        upstream = link(upstream, new PipelineStage<>("persist", PERSIST_PARALLELISM, capacity, this::persist, this::drop));
+        link(upstream, new PipelineStage<>("notify", 1, capacity, this::notify, this::drop));
+    }
+
+    /**
+     * Submits a request, waiting while the pipeline is full.
+     *
+     * @param request the request to serve.
+     * @return completes with the allocated vehicle, or null if none could be allocated.
+     * @throws IllegalStateException if the pipeline is closed.
+     */
+    public CompletableFuture<Vehicle> submit(AllocationRequest request) {
+        Allocation allocation = new Allocation(request);
+        source.submit(allocation);
+        return allocation.result;
+    }
+
+    /**
+     * Retrieves the number of requests waiting in each stage, e.g. to see which one is the bottleneck.
+     * @return the queue depth of each stage, in pipeline order, counting both the requests waiting
+     * for its workers and those it has handed on but not yet delivered to the next stage, after the
+     * requests not yet delivered to the first stage.
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        depths.put("submitted", source.estimateMaximumLag());
+        for (PipelineStage<Allocation, Allocation> stage : stages) {
+            depths.put(stage.getName(), stage.getQueueDepth());
+        }
+        return depths;
+    }
+
+    /**
+     * Retrieves the number of workers of the pipeline that use the database at once, each with a
+     * connection of the pool, e.g. to keep connections free for them.
+     * @return the number of workers of the persisting stage
+     */
+    public int getDatabaseParallelism() {
+        return PERSIST_PARALLELISM;
+    }
+
+    /**
+     * Stops accepting requests; those already submitted still go through every stage.
+     */
+    @Override
+    public void close() {
+        source.close();
+        sourceExecutor.shutdown();
+    }
+
+    private Allocation validate(Allocation allocation) {
+        if (allocation.request == null) {
+            throw new IllegalArgumentException("The allocation request is missing");
+        }
+        if (!Double.isFinite(allocation.request.getMinCapacity())) {
+            throw new IllegalArgumentException("Invalid minimum capacity: " + allocation.request.getMinCapacity());
+        }
+        allocation.strategy = allocation.request.toStrategy();
+        return allocation;
+    }
+
+    private Allocation filter(Allocation allocation) {
+        allocation.ranking = vehicleService.rankCandidates(allocation.strategy);
+        return allocation;
+    }
+
+    private Allocation rank(Allocation allocation) {
+        allocation.candidates = allocation.ranking.join();
+        return allocation.finish(allocation.candidates.isEmpty());
+    }
+
+    private Allocation reserve(Allocation allocation) {
+        List<Vehicle> free = new ArrayList<>();
+        List<Vehicle> reserved = new ArrayList<>();
+        for (Vehicle candidate : allocation.candidates) {
+            if (allocation.reservedId == null && reservedIds.add(candidate.getId())) {
+                allocation.reservedId = candidate.getId();
+                free.add(candidate);
+            } else if (reservedIds.contains(candidate.getId())) {
+                reserved.add(candidate);
+            } else {
+                free.add(candidate);
+            }
+        }
+        //Vehicles reserved by other requests are only tried if they lose them
+        free.addAll(reserved);
+        allocation.candidates = free;
+        return allocation;
+    }
+
+    private Allocation persist(Allocation allocation) {
+        try {
+            allocation.vehicle = vehicleService.claimVehicle(allocation.candidates);
+        } finally {
+            allocation.releaseReservation();
+        }
+        if (allocation.vehicle == null) {
+            //Every candidate was taken by an allocation outside the pipeline: start over from the current state
+            allocation.vehicle = vehicleService.allocateVehicle(allocation.strategy);
+        }
+        return allocation.finish(allocation.vehicle == null);
+    }
+
+    private Allocation notify(Allocation allocation) {
+        vehicleService.notifyAllocation(allocation.vehicle);
+        return allocation.finish(true);
+    }
+
+    private Flow.Publisher<Allocation> link(Flow.Publisher<Allocation> upstream,
+                                            PipelineStage<Allocation, Allocation> stage) {
+        upstream.subscribe(stage);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Completes a request that leaves the pipeline before it is done, because the work of a stage
+     * failed or it could not be handed on to the next stage, so that its caller does not wait forever.
+     */
+    private void drop(Allocation allocation, Throwable failure) {
+        allocation.releaseReservation();
+        allocation.result.completeExceptionally(failure);
+    }
+
+    /**
+     * A request on its way through the pipeline, with what the stages found out about it so far.
+     */
+    private final class Allocation {
+        private final AllocationRequest request;
+        private final CompletableFuture<Vehicle> result = new CompletableFuture<>();
+        private AllocationStrategy strategy;
+        private CompletableFuture<List<Vehicle>> ranking;
+        private List<Vehicle> candidates;
+        private Integer reservedId;
+        private Vehicle vehicle;
+
+        Allocation(AllocationRequest request) {
+            this.request = request;
+        }
+
+        /**
+         * Completes the request with its vehicle if it is done.
+         * @param done whether the request needs no further stage
+         * @return the request if it goes on to the next stage, or null
+         */
+        Allocation finish(boolean done) {
+            if (!done) {
+                return this;
+            }
+            result.complete(vehicle);
+            return null;
+        }
+
+        void releaseReservation() {
+            if (reservedId != null) {
+                reservedIds.remove(reservedId);
+                reservedId = null;
+            }
+        }
+    }
+}
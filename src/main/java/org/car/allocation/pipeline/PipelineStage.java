@@ -0,0 +1,154 @@
+package org.car.allocation.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * One stage of the {@link AllocationPipeline}: a {@link Flow.Processor} with its own bounded queue
+ * and a fixed number of worker threads. The workers are virtual threads, so a stage whose work
+ * mostly waits can have many of them.
+ * <p>
+ * The stage requests as many items from upstream as its queue can hold, and requests one more
+ * only once a worker has handed an item on, so the queue never overflows and upstream is held
+ * back while the stage is busy. Handing on is a blocking {@link SubmissionPublisher#submit}, so
+ * a slow downstream stage holds back the workers of this one in turn.
+ * </p>
+ * <p>
+ * Idle workers block on the queue rather than polling it, so they cost nothing while no requests
+ * arrive. When upstream completes, an end marker is queued for each worker after the last item;
+ * the queue has room for them on top of its capacity.
+ * </p>
+ * <p>
+ * An item that cannot be handed on, because the work failed, the next stage failed to take it or
+ * the stage is already closed, is given to the drop handler with the reason, so that whoever
+ * waits for the item hears of it.
+ * </p>
+ *
+ * @param <I> the type of the items received
+ * @param <O> the type of the items published
+ */
+class PipelineStage<I, O> extends SubmissionPublisher<O> implements Flow.Processor<I, O> {
+    //Queued once per worker after the last item, to stop the workers
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int parallelism;
+    private final int capacity;
+    private final Function<I, O> work;
+    private final BiConsumer<? super I, Throwable> onDrop;
+    private final BlockingQueue<Object> queue;
+    private final AtomicInteger runningWorkers;
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * Creates a stage and starts its workers.
+     *
+     * @param name the name of the stage, used for its threads
+     * @param parallelism the number of items processed at once
+     * @param capacity the number of items the stage can hold, queued or in process
+     * @param work processes an item, returning the item to hand on, or null if it is done with
+     * @param onDrop handles an item that could not be handed on, with the reason
+     */
+    PipelineStage(String name, int parallelism, int capacity, Function<I, O> work,
+                  BiConsumer<? super I, Throwable> onDrop) {
+        super(deliveryExecutor(name), capacity);
+        this.name = name;
+        this.parallelism = parallelism;
+        this.capacity = capacity;
+        this.work = work;
+        this.onDrop = onDrop;
+        this.queue = new ArrayBlockingQueue<>(capacity + parallelism);
+        this.runningWorkers = new AtomicInteger(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            Thread.ofVirtual().name("allocation-" + name + "-" + i).start(this::runWorker);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the number of items held by the stage and not yet taken by a worker or by the next
+     * stage: those waiting in its queue, and those it has handed on that the next stage has not
+     * received yet.
+     * @return the queue depth
+     */
+    int getQueueDepth() {
+        return queue.size() + estimateMaximumLag();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(capacity);
+    }
+
+    @Override
+    public void onNext(I item) {
+        //Never full: no more items are requested than the queue has room for
+        queue.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        closeExceptionally(throwable);
+        stopWorkers();
+    }
+
+    @Override
+    public void onComplete() {
+        //The workers close the stage once the queue is drained
+        stopWorkers();
+    }
+
+    private void stopWorkers() {
+        for (int i = 0; i < parallelism; i++) {
+            queue.add(END);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runWorker() {
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == END) {
+                    return;
+                }
+                try {
+                    O result = work.apply((I) item);
+                    if (result != null) {
+                        if (isClosed()) {
+                            throw new IllegalStateException("The " + name + " stage is closed", getClosedException());
+                        }
+                        submit(result);
+                    }
+                } catch (RuntimeException e) {
+                    onDrop.accept((I) item, e);
+                } finally {
+                    subscription.request(1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0) {
+                close();
+                ((ExecutorService) getExecutor()).shutdown();
+            }
+        }
+    }
+
+    private static ExecutorService deliveryExecutor(String name) {
+        //Delivering an item only queues it, so one thread per stage is enough
+        return Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("allocation-" + name + "-delivery").factory());
+    }
+}
@@ -0,0 +1,112 @@
+package org.car.allocation.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of a keyset-paginated listing.
+ * The continuation token marks the position after the last item of the page: passing it back
+ * to the repository returns the items that follow, without the database skipping over the
+ * earlier rows as an OFFSET would. The token is null on the last page.
+ *
+ * @param <T> the type of the listed items
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String continuationToken;
+
+    public Page(List<T> items, String continuationToken) {
+        this.items = items;
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Retrieves the items of this page.
+     * @return the items of this page, in listing order
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Retrieves the token to request the next page with.
+     * @return the continuation token, or null if this is the last page
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    /**
+     * Builds a page from rows fetched with a limit of one more than the page size;
+     * the extra row only signals that another page exists and is not returned.
+     *
+     * @param rows the fetched rows, ordered by ID
+     * @param pageSize the requested page size
+     * @param idOf extracts the key the listing is ordered by
+     * @return the page
+     */
+    static <T> Page<T> of(List<T> rows, int pageSize, ToLongFunction<? super T> idOf) {
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+        return new Page<>(items, Long.toString(idOf.applyAsLong(items.get(pageSize - 1))));
+    }
+
+    /**
+     * Checks a requested page size before any rows are fetched for it.
+     *
+     * @param pageSize the requested page size
+     * @throws IllegalArgumentException if the page size is not positive
+     */
+    static void checkPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+    }
+
+    /**
+     * Decodes a continuation token into the ID of the last item already listed.
+     *
+     * @param continuationToken the token, or null for the first page
+     * @return the ID after which the next page starts
+     * @throws IllegalArgumentException if the token was not issued by a repository
+     */
+    static long afterId(String continuationToken) {
+        return afterId(continuationToken, Long.MAX_VALUE);
+    }
+
+    /**
+     * Decodes a continuation token into the ID of the last item already listed, for items with
+     * {@code int} IDs.
+     *
+     * @param continuationToken the token, or null for the first page
+     * @return the ID after which the next page starts
+     * @throws IllegalArgumentException if the token was not issued by a repository, e.g. because it
+     * is out of the range of {@code int} IDs
+     */
+    static int afterIntId(String continuationToken) {
+        return (int) afterId(continuationToken, Integer.MAX_VALUE);
+    }
+
+    private static long afterId(String continuationToken, long maxId) {
+        if (continuationToken == null) {
+            return 0;
+        }
+        long id;
+        try {
+            id = Long.parseLong(continuationToken);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + continuationToken, e);
+        }
+        if (id < 0 || id > maxId) {
+            throw new IllegalArgumentException("Invalid continuation token: " + continuationToken);
+        }
+        return id;
+    }
+}
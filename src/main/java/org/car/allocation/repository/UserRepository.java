@@ -2,10 +2,14 @@ package org.car.allocation.repository;
 
 import org.car.allocation.model.User;
 import org.car.allocation.singleton.DatabaseUtil;
+import org.car.allocation.util.UserRole;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The UserRepository class provides methods for performing CRUD operations
@@ -15,6 +19,11 @@ import java.util.Optional;
  * in transactions to ensure data integrity.
  */
 public class UserRepository {
+    /**
+     * The maximum number of IDs bound to one statement, well below SQLite's limit on parameters.
+     */
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
     /**
      * Finds a user by their unique identifier (ID).
      *
@@ -35,10 +44,99 @@ public class UserRepository {
      */
     public List<User> findAll() {
         try (Session session = DatabaseUtil.openSession()) {
-            return session.createQuery("from User", User.class).list();
+            return session.createQuery("from User", User.class)
+                    .setCacheable(true)
+                    .list();
         }
     }
 
+    /**
+     * Retrieves the users with any of the given roles, using a session the caller already has open.
+     *
+     * @param session the session to read with
+     * @param roles the roles to look for
+     * @return a List of the users with one of the roles
+     */
+    public List<User> findByRoles(Session session, Collection<UserRole> roles) {
+        return session.createQuery("from User u where u.role in :roles", User.class)
+                .setParameterList("roles", roles)
+                .setCacheable(true)
+                .list();
+    }
+
+    /**
+     * Finds a driver without an assigned car or truck.
+     *
+     * @return an Optional containing the first available driver, or an empty Optional if there is none
+     */
+    public Optional<User> findAvailableDriver() {
+        try (Session session = DatabaseUtil.openSession()) {
+            return findAvailableDriver(session);
+        }
+    }
+
+    /**
+     * Finds a driver without an assigned car or truck, using a session the caller already has open.
+     *
+     * @param session the session to read with
+     * @return an Optional containing the first available driver, or an empty Optional if there is none
+     */
+    public Optional<User> findAvailableDriver(Session session) {
+        return session.createQuery("from User u where u.role = :role and u.car is null and u.truck is null order by u.id", User.class)
+                .setParameter("role", UserRole.DRIVER)
+                .setMaxResults(1)
+                .uniqueResultOptional();
+    }
+
+    /**
+     * Finds drivers without an assigned car or truck, using a session the caller already has open.
+     *
+     * @param session the session to read with
+     * @param maxResults the maximum number of drivers to return
+     * @return the available drivers, ordered by ID
+     */
+    public List<User> findAvailableDrivers(Session session, int maxResults) {
+        return session.createQuery("from User u where u.role = :role and u.car is null and u.truck is null order by u.id", User.class)
+                .setParameter("role", UserRole.DRIVER)
+                .setMaxResults(maxResults)
+                .list();
+    }
+
+    /**
+     * Retrieves one page of users, ordered by ID.
+     * The page is located by seeking past the ID in the continuation token, so every
+     * page costs the same to read regardless of how deep into the listing it is.
+     *
+     * @param continuationToken the token of the previous page, or null for the first page
+     * @param pageSize the maximum number of users on the page
+     * @return the page of users
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid
+     */
+    public Page<User> findPage(String continuationToken, int pageSize) {
+        Page.checkPageSize(pageSize);
+        try (Session session = DatabaseUtil.openSession()) {
+            List<User> rows = session.createQuery("from User u where u.id > :afterId order by u.id", User.class)
+                    .setParameter("afterId", Page.afterId(continuationToken))
+                    .setCacheable(true)
+                    .setMaxResults(pageSize + 1)
+                    .list();
+            return Page.of(rows, pageSize, User::getId);
+        }
+    }
+
+    /**
+     * Streams all users through a database cursor instead of loading them into a List.
+     * The assigned car and truck are fetched in the same query. The stream must be
+     * closed after use to release the underlying session, e.g. with try-with-resources.
+     *
+     * @param fetchSize the number of rows fetched per round trip, or 0 for the configured default
+     * @return a Stream of all User objects in the database
+     */
+    public Stream<User> streamAll(int fetchSize) {
+        return DatabaseUtil.stream(session -> session.createQuery(
+                "from User u left join fetch u.car left join fetch u.truck", User.class), fetchSize);
+    }
+
     /**
      * Saves a new User to the database.
      * This method executes a transaction that persists the provided User entity
@@ -69,8 +167,44 @@ public class UserRepository {
         DatabaseUtil.executeTransaction(session -> session.delete(user));
     }
 
+    /**
+     * Deletes the user with the given ID without loading it first.
+     *
+     * @param id the ID of the user to delete
+     * @return the number of deleted users, 0 if no user has the ID
+     */
+    public int deleteById(long id) {
+        return deleteAllById(List.of(id));
+    }
+
+    /**
+     * Deletes the users with the given IDs without loading them first, in a single
+     * transaction. Each DELETE statement removes up to {@value #MAX_IDS_PER_STATEMENT} users.
+     *
+     * @param ids the IDs of the users to delete
+     * @return the number of deleted users
+     */
+    public int deleteAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        int[] deleted = new int[1];
+        DatabaseUtil.executeTransaction(session -> {
+            for (int from = 0; from < idList.size(); from += MAX_IDS_PER_STATEMENT) {
+                List<Long> chunk = idList.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, idList.size()));
+                deleted[0] += session.createMutationQuery("delete from User u where u.id in :ids")
+                        .setParameterList("ids", chunk)
+                        .executeUpdate();
+            }
+        });
+        return deleted[0];
+    }
+
     /**
      * Finds a user by their username.
+     * The lookup is kept in the query cache and the user in the second-level cache,
+     * so repeated lookups of the same username do not reach the database.
      *
      * @param username the username of the user to find
      * @return an Optional containing the User if found, or an empty Optional if not
@@ -79,7 +213,21 @@ public class UserRepository {
         try (Session session = DatabaseUtil.openSession()) {
             Query<User> query = session.createQuery("from User u where u.username = :username", User.class);
             query.setParameter("username", username);
+            query.setCacheable(true);
             return query.uniqueResultOptional();
         }
     }
+
+    /**
+     * Finds a user by username, using a session the caller already has open.
+     *
+     * @param session the session to read with
+     * @param username the username of the user
+     * @return an Optional containing the user, or an empty Optional if there is none
+     */
+    public Optional<User> findByUsername(Session session, String username) {
+        return session.createQuery("from User u where u.username = :username", User.class)
+                .setParameter("username", username)
+                .uniqueResultOptional();
+    }
 }
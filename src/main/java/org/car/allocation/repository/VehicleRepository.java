@@ -1,20 +1,44 @@
 package org.car.allocation.repository;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
 import org.car.allocation.model.Vehicle;
 import org.car.allocation.singleton.DatabaseUtil;
+import org.car.allocation.specification.Specification;
+import org.car.allocation.util.VehicleStatus;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 
 /**
  * The VehicleRepository class provides generic methods for performing CRUD operations
  * on any type of Vehicle entity in the database using Hibernate.
  * This class supports operations such as finding, saving, updating, and deleting vehicles.
- * It is designed to work with any subclass of Vehicle.
+ * It is designed to work with any subclass of Vehicle, as well as with Vehicle itself,
+ * in which case queries are polymorphic and cover every vehicle type at once.
  *
  * @param <T> the type of vehicle (e.g., Car, Truck) that this repository manages
  */
 public class VehicleRepository<T extends Vehicle> {
+    /**
+     * The maximum number of IDs bound to one statement, well below SQLite's limit on parameters.
+     */
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+    private static volatile boolean licensePlateKeysBackfilled;
+
     private final Class<T> type;
 
     /**
@@ -39,16 +63,245 @@ public class VehicleRepository<T extends Vehicle> {
         }
     }
 
+    /**
+     * Finds a vehicle by its license plate, ignoring case and surrounding whitespace.
+     * The lookup is a single query on the indexed, normalized license plate column.
+     *
+     * @param licensePlate the license plate of the vehicle to find
+     * @return an Optional containing the vehicle if found, or an empty Optional if not
+     */
+    public Optional<T> findByLicensePlate(String licensePlate) {
+        backfillLicensePlateKeys();
+        try (Session session = DatabaseUtil.openSession()) {
+            return session.createQuery("from " + type.getSimpleName() + " v where v.licensePlateKey = :key", type)
+                    .setParameter("key", Vehicle.normalizeLicensePlate(licensePlate))
+                    .setCacheable(true)
+                    .setMaxResults(1)
+                    .uniqueResultOptional();
+        }
+    }
+
+    /**
+     * Fills in the normalized license plate of vehicles saved before the column existed.
+     * It runs once, before the first lookup by license plate. The vehicles are loaded and
+     * normalized by {@link Vehicle#normalizeLicensePlate(String)}, one JDBC batch at a time,
+     * so that the stored keys match the keys of the lookups exactly.
+     */
+    private static void backfillLicensePlateKeys() {
+        if (licensePlateKeysBackfilled) {
+            return;
+        }
+        synchronized (VehicleRepository.class) {
+            if (!licensePlateKeysBackfilled) {
+                int batchSize = DatabaseUtil.getJdbcBatchSize();
+                DatabaseUtil.executeTransaction(session -> {
+                    List<Vehicle> vehicles;
+                    do {
+                        vehicles = session.createQuery("from Vehicle v where v.licensePlateKey is null", Vehicle.class)
+                                .setMaxResults(batchSize)
+                                .list();
+                        for (Vehicle vehicle : vehicles) {
+                            //Setting the license plate sets its key as well
+                            vehicle.setLicensePlate(vehicle.getLicensePlate());
+                        }
+                        session.flush();
+                        session.clear();
+                    } while (vehicles.size() == batchSize);
+                });
+                licensePlateKeysBackfilled = true;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the vehicles of the specified type with the given IDs, reading each chunk of
+     * up to {@value #MAX_IDS_PER_STATEMENT} IDs with one query.
+     *
+     * @param ids the IDs of the vehicles to find
+     * @return a List of the vehicles found, in no particular order
+     */
+    public List<T> findAllById(Collection<Integer> ids) {
+        List<Integer> idList = new ArrayList<>(ids);
+        List<T> result = new ArrayList<>(idList.size());
+        try (Session session = DatabaseUtil.openSession()) {
+            for (int from = 0; from < idList.size(); from += MAX_IDS_PER_STATEMENT) {
+                List<Integer> chunk = idList.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, idList.size()));
+                result.addAll(session.createQuery("from " + type.getSimpleName() + " v where v.id in :ids", type)
+                        .setParameterList("ids", chunk)
+                        .list());
+            }
+        }
+        return result;
+    }
+
     /**
      * Retrieves all vehicles of the specified type from the database.
+     * The result is kept in the query cache until a vehicle table changes.
      * @return a List of all vehicles of the specified type
      */
     public List<T> findAll() {
         try (Session session = DatabaseUtil.openSession()) {
-            return session.createQuery("from " + type.getSimpleName(), type).list();
+            return session.createQuery("from " + type.getSimpleName(), type)
+                    .setCacheable(true)
+                    .list();
         }
     }
 
+    /**
+     * Retrieves one page of vehicles of the specified type, ordered by ID.
+     * The page is located by seeking past the ID in the continuation token, so every
+     * page costs the same to read regardless of how deep into the listing it is.
+     *
+     * @param continuationToken the token of the previous page, or null for the first page
+     * @param pageSize the maximum number of vehicles on the page
+     * @return the page of vehicles
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid
+     */
+    public Page<T> findPage(String continuationToken, int pageSize) {
+        return findPage(null, continuationToken, pageSize);
+    }
+
+    /**
+     * Retrieves one page of vehicles of the specified type with the given status, ordered by ID.
+     * The seek uses the (vehicleStatus, id) index of the vehicle tables.
+     *
+     * @param status the status to list, or null to list vehicles of every status
+     * @param continuationToken the token of the previous page, or null for the first page
+     * @param pageSize the maximum number of vehicles on the page
+     * @return the page of vehicles
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid
+     */
+    public Page<T> findPage(VehicleStatus status, String continuationToken, int pageSize) {
+        Page.checkPageSize(pageSize);
+        try (Session session = DatabaseUtil.openSession()) {
+            CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            CriteriaQuery<T> query = criteriaBuilder.createQuery(type);
+            Root<T> root = query.from(type);
+            Predicate predicate = criteriaBuilder.greaterThan(root.<Integer>get("id"), Page.afterIntId(continuationToken));
+            if (status != null) {
+                predicate = criteriaBuilder.and(criteriaBuilder.equal(root.get("vehicleStatus"), status), predicate);
+            }
+            query.select(root).where(predicate).orderBy(criteriaBuilder.asc(root.get("id")));
+            List<T> rows = session.createQuery(query)
+                    .setCacheable(true)
+                    .setMaxResults(pageSize + 1)
+                    .list();
+            return Page.of(rows, pageSize, Vehicle::getId);
+        }
+    }
+
+    /**
+     * Streams all vehicles of the specified type through a database cursor instead of
+     * loading them into a List. The stream must be closed after use to release the
+     * underlying session, e.g. with try-with-resources.
+     *
+     * @param fetchSize the number of rows fetched per round trip, or 0 for the configured default
+     * @return a Stream of all vehicles of the specified type
+     */
+    public Stream<T> streamAll(int fetchSize) {
+        return DatabaseUtil.stream(session -> session.createQuery("from " + type.getSimpleName(), type), fetchSize);
+    }
+
+    /**
+     * Streams the vehicles of the specified type that satisfy the given specification
+     * through a database cursor. The stream must be closed after use.
+     *
+     * @param specification the criteria the vehicles must satisfy
+     * @param fetchSize the number of rows fetched per round trip, or 0 for the configured default
+     * @return a Stream of the matching vehicles of the specified type
+     */
+    public Stream<T> streamAll(Specification<Vehicle> specification, int fetchSize) {
+        return DatabaseUtil.stream(session -> {
+            CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            CriteriaQuery<T> query = criteriaBuilder.createQuery(type);
+            Root<T> root = query.from(type);
+            query.select(root).where(specification.toPredicate(root, criteriaBuilder));
+            return session.createQuery(query);
+        }, fetchSize);
+    }
+
+    /**
+     * Retrieves the vehicles of the specified type that satisfy the given specification.
+     * The specification is translated into a Criteria predicate, so the filtering happens
+     * in the database and only matching rows are loaded.
+     *
+     * @param specification the criteria the vehicles must satisfy
+     * @return a List of the matching vehicles of the specified type
+     */
+    public List<T> findAll(Specification<Vehicle> specification) {
+        try (Session session = DatabaseUtil.openSession()) {
+            return findAll(session, specification);
+        }
+    }
+
+    /**
+     * Retrieves the vehicles of the specified type that satisfy the given specification,
+     * using a session the caller already has open. The vehicles stay managed by that
+     * session, so changes made to them within its transaction are written on commit.
+     *
+     * @param session the session to read with
+     * @param specification the criteria the vehicles must satisfy
+     * @return a List of the matching vehicles of the specified type
+     */
+    public List<T> findAll(Session session, Specification<Vehicle> specification) {
+        CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+        CriteriaQuery<T> query = criteriaBuilder.createQuery(type);
+        Root<T> root = query.from(type);
+        query.select(root).where(specification.toPredicate(root, criteriaBuilder));
+        return session.createQuery(query)
+                .setCacheable(true)
+                .list();
+    }
+
+    /**
+     * Retrieves one page of the vehicles that satisfy the given specification, ordered by
+     * the given attribute. For the Vehicle type this reads cars and trucks in a single
+     * query, so the ordering and the page boundaries apply across both tables.
+     *
+     * @param specification the criteria the vehicles must satisfy
+     * @param orderBy the name of the attribute to sort by, ascending (e.g. "mileage")
+     * @param firstResult the position of the first vehicle to return
+     * @param maxResults the maximum number of vehicles to return
+     * @return a List of the matching vehicles in the requested order
+     * @throws IllegalArgumentException if orderBy is not a basic attribute of the vehicle type
+     */
+    public List<T> findAll(Specification<Vehicle> specification, String orderBy, int firstResult, int maxResults) {
+        try (Session session = DatabaseUtil.openSession()) {
+            if (!getSortableAttributes(session).contains(orderBy)) {
+                throw new IllegalArgumentException("Cannot sort " + type.getSimpleName() + " by '" + orderBy
+                        + "'; sortable attributes: " + getSortableAttributes(session));
+            }
+            CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+            CriteriaQuery<T> query = criteriaBuilder.createQuery(type);
+            Root<T> root = query.from(type);
+            query.select(root)
+                    .where(specification.toPredicate(root, criteriaBuilder))
+                    .orderBy(criteriaBuilder.asc(root.get(orderBy)), criteriaBuilder.asc(root.get("id")));
+            return session.createQuery(query)
+                    .setCacheable(true)
+                    .setFirstResult(firstResult)
+                    .setMaxResults(maxResults)
+                    .list();
+        }
+    }
+
+    /**
+     * Retrieves the attributes vehicles of this type can be sorted by: the basic, single-valued
+     * attributes of the mapped entity, such as "mileage" or "fuelLevel".
+     *
+     * @param session the session whose metamodel describes the entity
+     * @return the names of the sortable attributes, in alphabetical order
+     */
+    private Set<String> getSortableAttributes(Session session) {
+        Set<String> attributes = new TreeSet<>();
+        for (SingularAttribute<? super T, ?> attribute : session.getMetamodel().entity(type).getSingularAttributes()) {
+            if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+                attributes.add(attribute.getName());
+            }
+        }
+        return attributes;
+    }
+
     /**
      * Saves a new vehicle entity to the database.
      * @param entity the vehicle to be saved
@@ -57,6 +310,140 @@ public class VehicleRepository<T extends Vehicle> {
         DatabaseUtil.executeTransaction(session -> session.save(entity));
     }
 
+    /**
+     * Saves many new vehicle entities in a single transaction, using the JDBC batch size
+     * configured by {@code hibernate.jdbc.batch_size}.
+     *
+     * @param entities the vehicles to be saved
+     */
+    public void saveAll(Collection<? extends T> entities) {
+        saveAll(entities, DatabaseUtil.getJdbcBatchSize());
+    }
+
+    /**
+     * Saves many new vehicle entities in a single transaction.
+     * The inserts are sent to the database in JDBC batches, and the session is flushed and
+     * cleared after every batch so that the persistence context does not grow with the
+     * number of vehicles saved.
+     *
+     * @param entities the vehicles to be saved
+     * @param batchSize the number of inserts sent to the database per batch
+     * @throws IllegalArgumentException if the batch size is lower than 1
+     */
+    public void saveAll(Collection<? extends T> entities, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        DatabaseUtil.executeTransaction(session -> {
+            session.setJdbcBatchSize(batchSize);
+            int count = 0;
+            for (T entity : entities) {
+                session.persist(entity);
+                if (++count % batchSize == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the status of every vehicle of the specified type that satisfies the given
+     * specification, with one set-based UPDATE per vehicle table instead of loading and
+     * saving each vehicle. Vehicles already in the target status are left untouched.
+     * The IDs are read in the same transaction as the update, so they are exactly the
+     * vehicles whose status changed.
+     *
+     * @param specification the criteria the vehicles must satisfy
+     * @param status the new status of the vehicles
+     * @return the IDs of the vehicles whose status changed
+     */
+    public List<Integer> updateStatus(Specification<Vehicle> specification, VehicleStatus status) {
+        List<Integer> ids = new ArrayList<>();
+        DatabaseUtil.executeTransaction(session -> {
+            for (Class<? extends Vehicle> concreteType : concreteTypes(session)) {
+                ids.addAll(updateStatus(session, concreteType, specification, status));
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Changes the status of a vehicle only if it still has the expected status and has not been
+     * updated since the given copy was read, i.e. its version is unchanged. The check and the
+     * change are one UPDATE statement, so two transactions can never both succeed on the same
+     * vehicle. The version is incremented, which makes other stale copies fail the same check.
+     *
+     * @param session the session of the running transaction
+     * @param vehicle the copy of the vehicle the decision was based on
+     * @param expectedStatus the status the vehicle must still have
+     * @param status the new status of the vehicle
+     * @return true if the status was changed, false if the vehicle was changed concurrently
+     */
+    public boolean compareAndSetStatus(Session session, Vehicle vehicle, VehicleStatus expectedStatus, VehicleStatus status) {
+        return session.createMutationQuery("update " + Hibernate.getClass(vehicle).getSimpleName() + " v"
+                        + " set v.vehicleStatus = :status, v.version = v.version + 1"
+                        + " where v.id = :id and v.version = :version and v.vehicleStatus = :expectedStatus")
+                .setParameter("status", status)
+                .setParameter("id", vehicle.getId())
+                .setParameter("version", vehicle.getVersion())
+                .setParameter("expectedStatus", expectedStatus)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * Lists the concrete vehicle types stored by this repository: the type itself, or
+     * every concrete subtype when the type is abstract (e.g. Car and Truck for Vehicle).
+     * Each of them has its own table.
+     *
+     * @param session the current session
+     * @return the concrete vehicle types
+     */
+    private List<Class<? extends Vehicle>> concreteTypes(Session session) {
+        List<Class<? extends Vehicle>> concreteTypes = new ArrayList<>();
+        for (EntityType<?> entity : session.getMetamodel().getEntities()) {
+            Class<?> entityType = entity.getJavaType();
+            if (type.isAssignableFrom(entityType) && !Modifier.isAbstract(entityType.getModifiers())) {
+                concreteTypes.add(entityType.asSubclass(Vehicle.class));
+            }
+        }
+        return concreteTypes;
+    }
+
+    /**
+     * Updates the status of the matching vehicles stored in the table of one concrete vehicle type.
+     *
+     * @param session the session of the running transaction
+     * @param concreteType the concrete vehicle type whose table is updated
+     * @param specification the criteria the vehicles must satisfy
+     * @param status the new status of the vehicles
+     * @return the IDs of the vehicles whose status changed
+     */
+    private static <S extends Vehicle> List<Integer> updateStatus(Session session, Class<S> concreteType,
+                                                                   Specification<Vehicle> specification, VehicleStatus status) {
+        CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+
+        CriteriaQuery<Integer> select = criteriaBuilder.createQuery(Integer.class);
+        Root<S> selectRoot = select.from(concreteType);
+        select.select(selectRoot.get("id"))
+                .where(specification.toPredicate(selectRoot, criteriaBuilder),
+                        criteriaBuilder.notEqual(selectRoot.get("vehicleStatus"), status));
+        List<Integer> ids = session.createQuery(select).list();
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        //Same predicate as the select: the transaction cannot write if another one changed the table in between
+        CriteriaUpdate<S> update = criteriaBuilder.createCriteriaUpdate(concreteType);
+        Root<S> updateRoot = update.from(concreteType);
+        update.set(updateRoot.<VehicleStatus>get("vehicleStatus"), status)
+                .set(updateRoot.<Long>get("version"), criteriaBuilder.sum(updateRoot.<Long>get("version"), 1L))
+                .where(specification.toPredicate(updateRoot, criteriaBuilder),
+                        criteriaBuilder.notEqual(updateRoot.get("vehicleStatus"), status));
+        session.createMutationQuery(update).executeUpdate();
+        return ids;
+    }
+
     /**
      * Updates an existing vehicle entity in the database.
      *
@@ -74,4 +461,41 @@ public class VehicleRepository<T extends Vehicle> {
     public void delete(T entity) {
         DatabaseUtil.executeTransaction(session -> session.delete(entity));
     }
+
+    /**
+     * Deletes the vehicle with the given ID without loading it first.
+     *
+     * @param id the ID of the vehicle to delete
+     * @return the number of deleted vehicles, 0 if no vehicle has the ID
+     */
+    public int deleteById(int id) {
+        return deleteAllById(List.of(id));
+    }
+
+    /**
+     * Deletes the vehicles with the given IDs without loading them first, in a single
+     * transaction. Each DELETE statement removes up to {@value #MAX_IDS_PER_STATEMENT}
+     * vehicles of one vehicle table.
+     *
+     * @param ids the IDs of the vehicles to delete
+     * @return the number of deleted vehicles
+     */
+    public int deleteAllById(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Integer> idList = new ArrayList<>(ids);
+        int[] deleted = new int[1];
+        DatabaseUtil.executeTransaction(session -> {
+            for (Class<? extends Vehicle> concreteType : concreteTypes(session)) {
+                for (int from = 0; from < idList.size(); from += MAX_IDS_PER_STATEMENT) {
+                    List<Integer> chunk = idList.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, idList.size()));
+                    deleted[0] += session.createMutationQuery("delete from " + concreteType.getSimpleName() + " v where v.id in :ids")
+                            .setParameterList("ids", chunk)
+                            .executeUpdate();
+                }
+            }
+        });
+        return deleted[0];
+    }
 }
@@ -0,0 +1,422 @@
+package org.car.allocation.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.car.allocation.model.Car;
+import org.car.allocation.model.Truck;
+import org.car.allocation.model.Vehicle;
+import org.car.allocation.pipeline.AllocationPipeline;
+import org.car.allocation.repository.Page;
+import org.car.allocation.service.VehicleService;
+import org.car.allocation.singleton.DatabaseUtil;
+import org.car.allocation.strategy.AllocationRequest;
+import org.car.allocation.util.VehicleStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Embedded HTTP server exposing vehicle allocation as a JSON API, for dispatch front ends that
+ * allocate without the console. Every exchange runs on its own virtual thread, so thousands of
+ * concurrent calls only cost a thread each while they wait on the database; the allocation
+ * itself stays safe under concurrency thanks to the compare-and-set claims of {@link VehicleService}.
+ * <p>
+ * The exchanges that call the database directly are limited to as many at once as the connection
+ * pool has connections ({@code hibernate.c3p0.max_size}), less those kept for the database workers
+ * of the {@link AllocationPipeline}; the others wait for a permit before they ask the pool for a
+ * connection. c3p0 waits for a free connection inside a {@code synchronized}
+ * block, which pins a virtual thread to its carrier, so letting every exchange wait in the pool
+ * would soon pin all the carrier threads and stall the server. Single allocations are not limited
+ * here: they wait on the {@link AllocationPipeline}, whose stages bound their own database work.
+ * </p>
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>{@code POST /allocations} with {@code {"cargo": true, "refrigerated": false, "minCapacity": 1000}}
+ *     or {@code {"cargo": false, "comfort": true, "minCapacity": 4}}: allocates a vehicle (201), or 409 if none could be.
+ *     The requests go through the {@link AllocationPipeline}, which holds back bursts.</li>
+ *     <li>{@code POST /allocations/batch} with an array of such requests: allocates them at once,
+ *     returning the vehicle of each request or null</li>
+ *     <li>{@code POST /releases} with {@code {"username": "driver", "mileage": 12500}}: releases the vehicle of a driver</li>
+ *     <li>{@code GET /vehicles?status=AVAILABLE&pageSize=50&continuationToken=...}: lists one page of vehicles</li>
+ *     <li>{@code PUT /vehicles/{id}/status} with {@code {"status": "IN_MAINTENANCE"}}: moves a vehicle
+ *     that is not in use to AVAILABLE or IN_MAINTENANCE</li>
+ *     <li>{@code GET /pipeline}: reports the queue depth of each stage of the allocation pipeline</li>
+ *     <li>{@code GET /specifications}: reports the operand order each allocation specification has learned</li>
+ * </ul>
+ * Errors are returned as {@code {"error": "..."}} with status 400 for invalid input, 404 for
+ * unknown resources and 409 for conflicts with the state of the fleet.
+ * </p>
+ */
+public class AllocationServer {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final VehicleService<Vehicle> vehicleService = new VehicleService<>();
+    private final AllocationPipeline allocationPipeline = new AllocationPipeline(vehicleService);
+    private final Semaphore connectionPermits = new Semaphore(
+            Math.max(1, DatabaseUtil.getConnectionPoolSize() - allocationPipeline.getDatabaseParallelism()), true);
+
+    /**
+     * Creates a server listening on the given port; it serves nothing until {@link #start()}.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public AllocationServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/allocations", this::handleAllocations);
+        server.createContext("/releases", this::handleReleases);
+        server.createContext("/vehicles", this::handleVehicles);
+        server.createContext("/pipeline", this::handlePipeline);
+        server.createContext("/specifications", this::handleSpecifications);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting exchanges and waits up to the given delay for the running ones to finish.
+     * @param delaySeconds the maximum time to wait, in seconds.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        allocationPipeline.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleAllocations(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            String path = exchange.getRequestURI().getPath();
+            requireMethod(exchange, "POST");
+            if (path.equals("/allocations")) {
+                Vehicle vehicle = allocate(toAllocationRequest(readObject(exchange)));
+                if (vehicle == null) {
+                    return new Response(409, error("No vehicle could be allocated for the request"));
+                }
+                return new Response(201, toJson(vehicle));
+            }
+            if (path.equals("/allocations/batch")) {
+                List<AllocationRequest> requests = new ArrayList<>();
+                for (Object request : readArray(exchange)) {
+                    requests.add(toAllocationRequest(asObject(request)));
+                }
+                List<Map<String, Object>> vehicles = new ArrayList<>();
+                for (Vehicle vehicle : withConnection(() -> vehicleService.allocate(requests))) {
+                    vehicles.add(vehicle == null ? null : toJson(vehicle));
+                }
+                return new Response(200, Map.of("vehicles", vehicles));
+            }
+            return notFound(path);
+        });
+    }
+
+    private void handleReleases(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            requireMethod(exchange, "POST");
+            if (!exchange.getRequestURI().getPath().equals("/releases")) {
+                return notFound(exchange.getRequestURI().getPath());
+            }
+            Map<String, Object> body = readObject(exchange);
+            String username = requireString(body, "username");
+            double mileage = requireNumber(body, "mileage");
+            Optional<Vehicle> vehicle = withConnection(() -> vehicleService.releaseVehicle(username, mileage));
+            if (vehicle.isEmpty()) {
+                return new Response(404, error("No vehicle is assigned to " + username));
+            }
+            return new Response(200, toJson(vehicle.get()));
+        });
+    }
+
+    private void handleVehicles(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            String[] segments = exchange.getRequestURI().getPath().split("/");
+            if (segments.length == 2) {
+                requireMethod(exchange, "GET");
+                Map<String, String> parameters = queryParameters(exchange);
+                return new Response(200, withConnection(() -> listVehicles(parameters)));
+            }
+            if (segments.length == 4 && segments[3].equals("status")) {
+                requireMethod(exchange, "PUT");
+                int id = parseId(segments[2]);
+                VehicleStatus status = parseStatus(requireString(readObject(exchange), "status"));
+                Optional<Vehicle> vehicle = withConnection(() -> vehicleService.transitionStatus(id, status));
+                if (vehicle.isEmpty()) {
+                    return notFound(exchange.getRequestURI().getPath());
+                }
+                return new Response(200, toJson(vehicle.get()));
+            }
+            return notFound(exchange.getRequestURI().getPath());
+        });
+    }
+
+    private void handlePipeline(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            requireMethod(exchange, "GET");
+            if (!exchange.getRequestURI().getPath().equals("/pipeline")) {
+                return notFound(exchange.getRequestURI().getPath());
+            }
+            return new Response(200, Map.of("queueDepths", allocationPipeline.getQueueDepths()));
+        });
+    }
+
+    private void handleSpecifications(HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            requireMethod(exchange, "GET");
+            if (!exchange.getRequestURI().getPath().equals("/specifications")) {
+                return notFound(exchange.getRequestURI().getPath());
+            }
+            return new Response(200, Map.of("specifications", vehicleService.describeSpecifications()));
+        });
+    }
+
+    /**
+     * Allocates a vehicle through the pipeline, waiting for the result on the virtual thread of the exchange.
+     */
+    private Vehicle allocate(AllocationRequest request) {
+        try {
+            return allocationPipeline.submit(request).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a call to the database once a connection of the pool is free for it, see the class comment.
+     */
+    private <T> T withConnection(Supplier<T> call) {
+        connectionPermits.acquireUninterruptibly();
+        try {
+            return call.get();
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    private Map<String, Object> listVehicles(Map<String, String> parameters) {
+        String continuationToken = parameters.get("continuationToken");
+        int pageSize = DEFAULT_PAGE_SIZE;
+        if (parameters.containsKey("pageSize")) {
+            try {
+                pageSize = Integer.parseInt(parameters.get("pageSize"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page size: " + parameters.get("pageSize"));
+            }
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("The page size must be between 1 and " + MAX_PAGE_SIZE);
+            }
+        }
+        Page<Vehicle> page = parameters.containsKey("status")
+                ? vehicleService.getVehiclePageByStatus(parseStatus(parameters.get("status")), continuationToken, pageSize)
+                : vehicleService.getVehiclePage(continuationToken, pageSize);
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (Vehicle vehicle : page.getItems()) {
+            items.add(toJson(vehicle));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("items", items);
+        result.put("continuationToken", page.getContinuationToken());
+        return result;
+    }
+
+    /**
+     * Runs an exchange and writes its response, mapping the exceptions of the services to
+     * error statuses.
+     */
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        Response response;
+        try {
+            response = route.run();
+        } catch (MethodNotAllowedException e) {
+            exchange.getResponseHeaders().set("Allow", e.getMessage());
+            response = new Response(405, error("Method not allowed, use " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            response = new Response(400, error(e.getMessage()));
+        } catch (IOException e) {
+            response = new Response(400, error("Could not read the request body: " + e.getMessage()));
+        } catch (IllegalStateException e) {
+            response = new Response(409, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            response = new Response(500, error("Internal error"));
+        }
+        byte[] body = Json.write(response.body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static AllocationRequest toAllocationRequest(Map<String, Object> body) {
+        boolean cargo = requireBoolean(body, "cargo");
+        double minCapacity = body.get("minCapacity") == null ? 0 : requireNumber(body, "minCapacity");
+        if (cargo) {
+            return AllocationRequest.forCargo(optionalBoolean(body, "refrigerated"), minCapacity);
+        }
+        return AllocationRequest.forPassengers(optionalBoolean(body, "comfort"), (int) minCapacity);
+    }
+
+    private static Map<String, Object> toJson(Vehicle vehicle) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", vehicle.getId());
+        json.put("type", vehicle instanceof Truck ? "TRUCK" : "CAR");
+        json.put("licensePlate", vehicle.getLicensePlate());
+        json.put("model", vehicle.getModel());
+        json.put("status", vehicle.getVehicleStatus());
+        json.put("engineType", vehicle.getEngineType());
+        json.put("fuelLevel", vehicle.getFuelLevel());
+        json.put("maxSpeed", vehicle.getMaxSpeed());
+        json.put("mileage", vehicle.getMileage());
+        if (vehicle instanceof Car car) {
+            json.put("passengerCapacity", car.getPassengerCapacity());
+            json.put("comfortLevel", car.getComfortLevel());
+        } else if (vehicle instanceof Truck truck) {
+            json.put("cargoCapacity", truck.getCargoCapacity());
+            json.put("refrigerated", truck.hasRefrigerationUnit());
+        }
+        return json;
+    }
+
+    private static Map<String, Object> readObject(HttpExchange exchange) throws IOException {
+        return asObject(Json.parse(readBody(exchange)));
+    }
+
+    private static List<?> readArray(HttpExchange exchange) throws IOException {
+        Object value = Json.parse(readBody(exchange));
+        if (!(value instanceof List<?> array)) {
+            throw new IllegalArgumentException("Expected a JSON array");
+        }
+        return array;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static String requireString(Map<String, Object> body, String name) {
+        if (!(body.get(name) instanceof String value)) {
+            throw new IllegalArgumentException("Missing text field: " + name);
+        }
+        return value;
+    }
+
+    private static double requireNumber(Map<String, Object> body, String name) {
+        if (!(body.get(name) instanceof Double value)) {
+            throw new IllegalArgumentException("Missing number field: " + name);
+        }
+        return value;
+    }
+
+    private static boolean requireBoolean(Map<String, Object> body, String name) {
+        if (!(body.get(name) instanceof Boolean value)) {
+            throw new IllegalArgumentException("Missing boolean field: " + name);
+        }
+        return value;
+    }
+
+    private static boolean optionalBoolean(Map<String, Object> body, String name) {
+        return body.get(name) != null && requireBoolean(body, name);
+    }
+
+    private static int parseId(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid vehicle ID: " + segment);
+        }
+    }
+
+    private static VehicleStatus parseStatus(String status) {
+        try {
+            return VehicleStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown status: " + status);
+        }
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+            throw new MethodNotAllowedException(method);
+        }
+    }
+
+    private static Response notFound(String path) {
+        return new Response(404, error("Not found: " + path));
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", message);
+        return error;
+    }
+
+    private interface Route {
+        Response run() throws IOException;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final Object body;
+
+        Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static class MethodNotAllowedException extends RuntimeException {
+        MethodNotAllowedException(String allowedMethod) {
+            super(allowedMethod);
+        }
+    }
+}
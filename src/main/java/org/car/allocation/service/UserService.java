@@ -4,11 +4,13 @@ import org.car.allocation.model.Car;
 import org.car.allocation.model.Truck;
 import org.car.allocation.model.User;
 import org.car.allocation.model.Vehicle;
+import org.car.allocation.repository.Page;
 import org.car.allocation.repository.UserRepository;
 import org.car.allocation.singleton.DatabaseUtil;
 import org.car.allocation.util.UserRole;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.car.allocation.util.VehicleStatus;
 import org.hibernate.Session;
 import org.mindrot.jbcrypt.BCrypt;
@@ -29,6 +31,28 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    /**
+     * Retrieves one page of users, ordered by ID.
+     *
+     * @param continuationToken the token of the previous page, or null for the first page.
+     * @param pageSize the maximum number of users on the page.
+     * @return the page of users.
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid.
+     */
+    public Page<User> getUserPage(String continuationToken, int pageSize) {
+        return userRepository.findPage(continuationToken, pageSize);
+    }
+
+    /**
+     * Streams all users through a database cursor instead of loading them into a list.
+     * The stream must be closed after use.
+     *
+     * @return a stream of all users.
+     */
+    public Stream<User> streamAllUsers() {
+        return userRepository.streamAll(0);
+    }
+
     /**
      * Adds a new user.
      *
@@ -48,18 +72,24 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
+    /**
+     * Finds a user by their username within the caller's session and transaction.
+     *
+     * @param session the session of the running transaction.
+     * @param username the username of the user to find.
+     * @return an Optional containing the found user, or empty if not found.
+     */
+    public Optional<User> findUserByUsername(Session session, String username) {
+        return userRepository.findByUsername(session, username);
+    }
+
     /**
      * Deletes a user by their ID.
      * @param id the ID of the user to be deleted.
      * @return true if the user was deleted successfully, false if not found.
      */
     public boolean deleteUserById(long id) {
-        Optional<User> userOpt = userRepository.findById(id);
-        if (userOpt.isPresent()) {
-            userRepository.delete(userOpt.get());
-            return true;
-        }
-        return false;
+        return userRepository.deleteById(id) > 0;
     }
 
     /**
@@ -93,13 +123,28 @@ public class UserService {
      * @return an Optional containing the available driver, or empty if none is found.
      */
     public Optional<User> findAvailableDriver() {
-        try (Session session = DatabaseUtil.openSession()) {
-            List<User> drivers = session.createQuery("from User u where u.role = :role and u.car is null and u.truck is null", User.class)
-                    .setParameter("role", UserRole.DRIVER)
-                    .list();
+        return userRepository.findAvailableDriver();
+    }
 
-            return drivers.stream().findFirst(); //First driver available
-        }
+    /**
+     * Finds an available driver within the caller's session and transaction.
+     *
+     * @param session the session of the running transaction.
+     * @return an Optional containing the available driver, or empty if none is found.
+     */
+    public Optional<User> findAvailableDriver(Session session) {
+        return userRepository.findAvailableDriver(session);
+    }
+
+    /**
+     * Finds available drivers within the caller's session and transaction, e.g. to serve a batch of requests.
+     *
+     * @param session the session of the running transaction.
+     * @param maxResults the maximum number of drivers to return.
+     * @return the available drivers.
+     */
+    public List<User> findAvailableDrivers(Session session, int maxResults) {
+        return userRepository.findAvailableDrivers(session, maxResults);
     }
 
     /**
@@ -109,25 +154,33 @@ public class UserService {
      * @param vehicle the vehicle to be allocated.
      */
     public void allocateVehicleToDriver(User driver, Vehicle vehicle) {
-        DatabaseUtil.executeTransaction(session -> {
-            if (vehicle instanceof Car) {
-                driver.setCar((Car) vehicle);
-            } else if (vehicle instanceof Truck) {
-                driver.setTruck((Truck) vehicle);
-            }
-            session.update(driver);
-
-            if (!vehicle.hasObserver(driver)) {
-                vehicle.addObserver(driver);
-            }
-
-            for (User user : getAllUsers()) {
-                if (user.getRole() == UserRole.MANAGER || user.getRole() == UserRole.ADMIN) {
-                    vehicle.addObserver(user);
-                }
-            }
-            vehicle.setVehicleStatus(VehicleStatus.IN_USE);
-            session.update(vehicle);
-        });
+        DatabaseUtil.executeTransaction(session -> allocateVehicleToDriver(session, driver, vehicle));
+    }
+
+    /**
+     * Allocates a vehicle (Car or Truck) to a driver within the caller's session and transaction.
+     * The driver and the vehicle are written when the transaction commits.
+     *
+     * @param session the session of the running transaction.
+     * @param driver  the driver to whom the vehicle will be allocated.
+     * @param vehicle the vehicle to be allocated.
+     */
+    public void allocateVehicleToDriver(Session session, User driver, Vehicle vehicle) {
+        if (vehicle instanceof Car) {
+            driver.setCar((Car) vehicle);
+        } else if (vehicle instanceof Truck) {
+            driver.setTruck((Truck) vehicle);
+        }
+        session.update(driver);
+
+        if (!vehicle.hasObserver(driver)) {
+            vehicle.addObserver(driver);
+        }
+
+        for (User user : userRepository.findByRoles(session, List.of(UserRole.MANAGER, UserRole.ADMIN))) {
+            vehicle.addObserver(user);
+        }
+        vehicle.setVehicleStatus(VehicleStatus.IN_USE);
+        session.update(vehicle);
     }
 }
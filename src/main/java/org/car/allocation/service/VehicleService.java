@@ -1,19 +1,34 @@
 package org.car.allocation.service;
+import org.car.allocation.handler.AllocationCoalescer;
 import org.car.allocation.handler.VehicleAllocationHandler;
+import org.car.allocation.index.CandidateQueue;
+import org.car.allocation.index.FleetIndex;
 import org.car.allocation.model.User;
+import org.car.allocation.observer.VehicleObserver;
+import org.car.allocation.observer.VehicleStatusNotifier;
+import org.car.allocation.specification.CompiledSpecification;
 import org.car.allocation.specification.OperationableSpecification;
 import org.car.allocation.specification.Specification;
-import org.car.allocation.specification.VehicleStatusSpecification;
+import org.car.allocation.specification.SpecificationCompiler;
 import org.car.allocation.strategy.*;
 
 import org.car.allocation.model.Car;
 import org.car.allocation.model.Truck;
 import org.car.allocation.model.Vehicle;
+import org.car.allocation.repository.Page;
 import org.car.allocation.repository.VehicleRepository;
+import org.car.allocation.singleton.DatabaseUtil;
 import org.car.allocation.util.VehicleStatus;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 /**
  * Service layer responsible for managing vehicles (Cars and Trucks) and their allocation to drivers.
  * Handles vehicle status, allocation strategies, and vehicle updates.
@@ -24,6 +39,22 @@ public class VehicleService<T extends Vehicle> {
     private final VehicleRepository<Truck> truckRepository = new VehicleRepository<>(Truck.class);
     private final VehicleRepository<Vehicle> vehicleRepository = new VehicleRepository<>(Vehicle.class);
     private static final ResourceBundle messages = ResourceBundle.getBundle("messages");
+    private static final Logger logger = LoggerFactory.getLogger(VehicleService.class);
+    private static final int MAX_ALLOCATION_ATTEMPTS = 10;
+    private static final int CLAIM_BATCH_SIZE = 16;
+    private static final int MAX_CANDIDATE_QUEUES = 8;
+    private static final long COALESCING_WINDOW_MILLIS = 5;
+    //The vehicles that can be allocated: available and with enough fuel
+    public static final CompiledSpecification<Vehicle> OPERATIONAL_SPEC =
+            SpecificationCompiler.compile(new OperationableSpecification(50.0));
+    //Queues of ranked candidates per strategy setting, least recently used first
+    private static final Map<AllocationStrategy, CandidateQueue> candidateQueues = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final VehicleStatusNotifier statusNotifier = new VehicleStatusNotifier();
+    private final FleetIndex fleetIndex = FleetIndex.getInstance();
+    private final BatchAllocationEngine batchAllocationEngine = new BatchAllocationEngine();
+    private final AllocationCoalescer allocationCoalescer =
+            new AllocationCoalescer(this::rankVehicles, COALESCING_WINDOW_MILLIS, CLAIM_BATCH_SIZE);
 
     private final UserService userService;
     public VehicleService() {
@@ -36,10 +67,29 @@ public class VehicleService<T extends Vehicle> {
      * @return a list of all vehicles.
      */
     public List<Vehicle> getAllVehicles() {
-        List<Vehicle> vehicles = new ArrayList<>();
-        vehicles.addAll(carRepository.findAll());
-        vehicles.addAll(truckRepository.findAll());
-        return vehicles;
+        return vehicleRepository.findAll();
+    }
+
+    /**
+     * Streams all vehicles (both Cars and Trucks) through a database cursor, so the fleet
+     * never has to be held in memory at once. The stream must be closed after use.
+     *
+     * @return a stream of all vehicles.
+     */
+    public Stream<Vehicle> streamAllVehicles() {
+        return vehicleRepository.streamAll(0);
+    }
+
+    /**
+     * Streams the vehicles that satisfy the given specification through a database cursor.
+     * The stream must be closed after use.
+     *
+     * @param specification the criteria the vehicles must satisfy.
+     * @param fetchSize the number of rows fetched per round trip, or 0 for the configured default.
+     * @return a stream of the matching vehicles.
+     */
+    public Stream<Vehicle> streamVehiclesBySpecification(Specification<Vehicle> specification, int fetchSize) {
+        return vehicleRepository.streamAll(specification, fetchSize);
     }
 
     /**
@@ -49,27 +99,44 @@ public class VehicleService<T extends Vehicle> {
      * @return a list of available vehicles.
      */
     public List<Vehicle> getAvailableVehicles() {
-        Specification<Vehicle> specification = new VehicleStatusSpecification(VehicleStatus.AVAILABLE);
-
-        List<Vehicle> allVehicles = getAllVehicles();
-        return allVehicles.stream()
-                .filter(specification::isSatisfiedBy)
-                .collect(Collectors.toList());
+        return getVehiclesByStatus(VehicleStatus.AVAILABLE);
     }
 
     /**
      * Retrieves a list of vehicles filtered by a specific status.
+     * The vehicles come from the in-memory fleet index, without querying the database.
      *
      * @param status the vehicle status to filter by (e.g., AVAILABLE, IN_USE).
      * @return a list of vehicles with the specified status.
      */
     public List<Vehicle> getVehiclesByStatus(VehicleStatus status) {
-        Specification<Vehicle> specification = new VehicleStatusSpecification(status);
+        return fleetIndex.findByStatus(status);
+    }
+
+    /**
+     * Retrieves the vehicles (both Cars and Trucks) that satisfy the given specification.
+     * The specification is evaluated by the database, so only matching vehicles are loaded.
+     *
+     * @param specification the criteria the vehicles must satisfy.
+     * @return a list of the matching vehicles.
+     */
+    public List<Vehicle> getVehiclesBySpecification(Specification<Vehicle> specification) {
+        return vehicleRepository.findAll(specification);
+    }
 
-        List<Vehicle> allVehicles = getAllVehicles();
-        return allVehicles.stream()
-                .filter(specification::isSatisfiedBy)
-                .collect(Collectors.toList());
+    /**
+     * Retrieves one page of the vehicles (both Cars and Trucks) that satisfy the given specification,
+     * ordered by the given attribute across both vehicle types.
+     *
+     * @param specification the criteria the vehicles must satisfy.
+     * @param orderBy the name of the attribute to sort by, ascending (e.g. "fuelLevel").
+     * @param firstResult the position of the first vehicle to return.
+     * @param maxResults the maximum number of vehicles to return.
+     * @return a list of the matching vehicles in the requested order.
+     * @throws IllegalArgumentException if orderBy is not an attribute vehicles can be sorted by.
+     */
+    public List<Vehicle> getVehiclesBySpecification(Specification<Vehicle> specification, String orderBy, int firstResult, int maxResults) {
+        return vehicleRepository.findAll(specification, orderBy, firstResult, maxResults);
     }
 
     /**
@@ -79,6 +146,7 @@ public class VehicleService<T extends Vehicle> {
      */
     public void addCar(Car car) {
         carRepository.save(car);
+        fleetIndex.put(car);
     }
 
     /**
@@ -88,6 +156,18 @@ public class VehicleService<T extends Vehicle> {
      */
     public void addTruck(Truck truck) {
         truckRepository.save(truck);
+        fleetIndex.put(truck);
+    }
+
+    /**
+     * Adds many vehicles (Cars and Trucks) to the repository in one transaction,
+     * e.g. when onboarding a dealer feed.
+     *
+     * @param vehicles the vehicles to be added.
+     */
+    public void addVehicles(Collection<? extends Vehicle> vehicles) {
+        vehicleRepository.saveAll(vehicles);
+        fleetIndex.putAll(vehicles);
     }
 
     /**
@@ -110,6 +190,16 @@ public class VehicleService<T extends Vehicle> {
         return truckRepository.findById(id);
     }
 
+    /**
+     * Finds a vehicle of any type by its license plate, ignoring case.
+     *
+     * @param licensePlate the license plate of the vehicle.
+     * @return an Optional containing the vehicle, if found.
+     */
+    public Optional<Vehicle> findByLicensePlate(String licensePlate) {
+        return vehicleRepository.findByLicensePlate(licensePlate);
+    }
+
     /**
      * Retrieves a list of all cars.
      *
@@ -126,6 +216,55 @@ public class VehicleService<T extends Vehicle> {
      */
     public List<Truck> getAllTrucks() { return truckRepository.findAll(); }
 
+    /**
+     * Retrieves one page of vehicles (both Cars and Trucks), ordered by ID.
+     *
+     * @param continuationToken the token of the previous page, or null for the first page.
+     * @param pageSize the maximum number of vehicles on the page.
+     * @return the page of vehicles.
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid.
+     */
+    public Page<Vehicle> getVehiclePage(String continuationToken, int pageSize) {
+        return vehicleRepository.findPage(continuationToken, pageSize);
+    }
+
+    /**
+     * Retrieves one page of vehicles (both Cars and Trucks) with the given status, ordered by ID.
+     *
+     * @param status the vehicle status to list.
+     * @param continuationToken the token of the previous page, or null for the first page.
+     * @param pageSize the maximum number of vehicles on the page.
+     * @return the page of vehicles.
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid.
+     */
+    public Page<Vehicle> getVehiclePageByStatus(VehicleStatus status, String continuationToken, int pageSize) {
+        return vehicleRepository.findPage(status, continuationToken, pageSize);
+    }
+
+    /**
+     * Retrieves one page of cars, ordered by ID.
+     *
+     * @param continuationToken the token of the previous page, or null for the first page.
+     * @param pageSize the maximum number of cars on the page.
+     * @return the page of cars.
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid.
+     */
+    public Page<Car> getCarPage(String continuationToken, int pageSize) {
+        return carRepository.findPage(continuationToken, pageSize);
+    }
+
+    /**
+     * Retrieves one page of trucks, ordered by ID.
+     *
+     * @param continuationToken the token of the previous page, or null for the first page.
+     * @param pageSize the maximum number of trucks on the page.
+     * @return the page of trucks.
+     * @throws IllegalArgumentException if the page size is less than 1 or the token is invalid.
+     */
+    public Page<Truck> getTruckPage(String continuationToken, int pageSize) {
+        return truckRepository.findPage(continuationToken, pageSize);
+    }
+
     /**
      * Deletes a car by its ID.
      *
@@ -133,12 +272,9 @@ public class VehicleService<T extends Vehicle> {
      * @return true if the car was deleted, false otherwise.
      */
     public boolean deleteCarById(int id) {
-        Optional<Car> car = carRepository.findById(id);
-        if (car.isPresent()) {
-            carRepository.delete(car.get());
-            return true;
-        }
-        return false;
+        boolean deleted = carRepository.deleteById(id) > 0;
+        fleetIndex.remove(id);
+        return deleted;
     }
 
     /**
@@ -148,12 +284,21 @@ public class VehicleService<T extends Vehicle> {
      * @return true if the truck was deleted, false otherwise.
      */
     public boolean deleteTruckById(int id) {
-        Optional<Truck> truck = truckRepository.findById(id);
-        if (truck.isPresent()) {
-            truckRepository.delete(truck.get());
-            return true;
-        }
-        return false;
+        boolean deleted = truckRepository.deleteById(id) > 0;
+        fleetIndex.remove(id);
+        return deleted;
+    }
+
+    /**
+     * Deletes the vehicles of any type with the given IDs, without loading them first.
+     *
+     * @param ids the IDs of the vehicles to delete.
+     * @return the number of deleted vehicles.
+     */
+    public int deleteVehiclesById(Collection<Integer> ids) {
+        int deleted = vehicleRepository.deleteAllById(ids);
+        fleetIndex.removeAll(ids);
+        return deleted;
     }
 
     /**
@@ -161,21 +306,78 @@ public class VehicleService<T extends Vehicle> {
      *
      * @param car the car with updated details.
      */
-    public void updateCar(Car car) { carRepository.update(car); }
+    public void updateCar(Car car) {
+        carRepository.update(car);
+        fleetIndex.put(car);
+    }
 
     /**
      * Updates the details of a truck in the repository.
      *
      * @param truck the truck with updated details.
      */
-    public void updateTruck(Truck truck) { truckRepository.update(truck); }
+    public void updateTruck(Truck truck) {
+        truckRepository.update(truck);
+        fleetIndex.put(truck);
+    }
 
     /**
      * Updates the details of a vehicle (generic type).
      *
      * @param vehicle the vehicle with updated details.
      */
-    public void updateVehicle(Vehicle vehicle) { vehicleRepository.update(vehicle); }
+    public void updateVehicle(Vehicle vehicle) {
+        vehicleRepository.update(vehicle);
+        fleetIndex.put(vehicle);
+    }
+
+    /**
+     * Moves every vehicle that satisfies the given specification to the given status
+     * with a set-based update in the database, e.g. all trucks above a mileage limit
+     * into maintenance. Observers registered with {@link #addStatusObserver} receive a
+     * single notification for the whole group instead of one per vehicle.
+     *
+     * @param specification the criteria the vehicles must satisfy.
+     * @param status the new status of the vehicles.
+     * @return the IDs of the vehicles whose status changed.
+     */
+    public List<Integer> bulkTransition(Specification<Vehicle> specification, VehicleStatus status) {
+        List<Integer> ids = vehicleRepository.updateStatus(specification, status);
+        refreshIndex(ids);
+        if (!ids.isEmpty()) {
+            statusNotifier.notifyObservers(ids.size() + " vehicles status changed to: " + status);
+        }
+        return ids;
+    }
+
+    /**
+     * Registers an observer for status changes made to groups of vehicles, and for the allocations
+     * announced through {@link #notifyAllocation(Vehicle)}.
+     *
+     * @param observer the observer to notify.
+     */
+    public void addStatusObserver(VehicleObserver observer) {
+        statusNotifier.addObserver(observer);
+    }
+
+    /**
+     * Removes an observer of status changes made to groups of vehicles.
+     *
+     * @param observer the observer to remove.
+     */
+    public void removeStatusObserver(VehicleObserver observer) {
+        statusNotifier.removeObserver(observer);
+    }
+
+    /**
+     * Notifies the status observers that a vehicle has been allocated, e.g. by the
+     * {@link org.car.allocation.pipeline.AllocationPipeline}.
+     *
+     * @param vehicle the allocated vehicle.
+     */
+    public void notifyAllocation(Vehicle vehicle) {
+        statusNotifier.notifyObservers("Vehicle with ID " + vehicle.getId() + " has been allocated");
+    }
 
     /**
      * Allocates a vehicle to an available driver based on the user's input.
@@ -184,87 +386,448 @@ public class VehicleService<T extends Vehicle> {
      * @return the allocated vehicle, or null if no vehicle was allocated.
      */
     public Vehicle allocateVehicle() {
-        List<Vehicle> allVehicles = getAllVehicles();
-        Specification<Vehicle> operationalSpec = new OperationableSpecification(50.0);
-        VehicleAllocationHandler allocationHandler = new VehicleAllocationHandler(selectStrategy(), operationalSpec);
-        Vehicle allocatedVehicle = allocationHandler.allocateVehicle(allVehicles);
-
-        if (allocatedVehicle == null) {
-            System.out.println(messages.getString("vehicle.allocate.strategy.error"));
-            return null;
+        return allocateVehicle(selectStrategy());
+    }
+
+    /**
+     * Allocates a vehicle for the given request to an available driver, without reading any input.
+     *
+     * @param request the request to serve.
+     * @return the allocated vehicle, or null if no vehicle was allocated.
+     */
+    public Vehicle allocate(AllocationRequest request) {
+        return allocateVehicle(request.toStrategy());
+    }
+
+    /**
+     * Allocates vehicles for many requests at once, without reading any input.
+     *
+     * @param requests the requests to serve.
+     * @return the vehicle allocated for each request, in the order of the requests, or null for the
+     * requests that could not be served.
+     * @see #allocateVehicles(List)
+     */
+    public List<Vehicle> allocate(Collection<AllocationRequest> requests) {
+        return allocateVehicles(requests.stream().map(AllocationRequest::toStrategy).toList());
+    }
+
+    /**
+     * Allocates a vehicle chosen by the given strategy to an available driver.
+     * The candidates are the available vehicles of the fleet index, claimed in one transaction with a
+     * compare-and-set on the vehicle's status and version: a vehicle that a concurrent
+     * allocation changed or took in the meantime is skipped in favour of the next best
+     * candidate. The driver is picked and written in the same transaction, after the claim,
+     * when SQLite already holds the write lock for it. This makes it safe to run many
+     * allocations in parallel without booking a vehicle or a driver twice.
+     * <p>
+     * The best {@value #CLAIM_BATCH_SIZE} candidates are ranked up front (see
+     * {@link #rankVehicles(AllocationStrategy, int)}) and claimed in that order. The first attempt
+     * is coalesced with the concurrent allocations of an equal strategy by an {@link AllocationCoalescer}:
+     * the candidates are ranked once for all of them, and each gets a different best vehicle.
+     * </p>
+     *
+     * @param strategy the strategy used to choose among the operational vehicles.
+     * @return the allocated vehicle, or null if no vehicle was allocated.
+     */
+    public Vehicle allocateVehicle(AllocationStrategy strategy) {
+        for (int attempt = 1; attempt <= MAX_ALLOCATION_ATTEMPTS; attempt++) {
+            List<Vehicle> candidates = attempt == 1
+                    ? rankCandidates(strategy).join()
+                    : rankVehicles(strategy, CLAIM_BATCH_SIZE);
+
+            if (candidates.isEmpty()) {
+                logger.debug("No vehicle satisfies {}", strategy);
+                return null;
+            }
+            if (!userService.findAvailableDriver().isPresent()) {
+                logger.debug("No available driver for {}", strategy);
+                return null;
+            }
+
+            Vehicle allocatedVehicle = claimVehicle(candidates);
+            if (allocatedVehicle != null) {
+                return allocatedVehicle;
+            }
+            //Every candidate was taken concurrently, or the last driver was: start over from the current state
+        }
+        logger.debug("No vehicle could be claimed for {} in {} attempts", strategy, MAX_ALLOCATION_ATTEMPTS);
+        return null;
+    }
+
+    /**
+     * Allocates vehicles to many requests at once, e.g. the requests of a morning shift.
+     * The {@link BatchAllocationEngine} matches the requests to the operational vehicles of the
+     * fleet index so that as many requests as possible are served and, among those matchings, the
+     * vehicles are as high in the ranking of each strategy as possible. The matched vehicles are
+     * then claimed in one transaction with the same compare-and-set as {@link #allocateVehicle(AllocationStrategy)},
+     * each with the next available driver; the requests whose vehicle was taken concurrently are
+     * matched again with what is left.
+     *
+     * @param requests the strategy of each request.
+     * @return the vehicle allocated to each request, in the order of the requests, or null for the
+     * requests that could not be served.
+     */
+    public List<Vehicle> allocateVehicles(List<AllocationStrategy> requests) {
+        Vehicle[] allocatedVehicles = new Vehicle[requests.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 1; attempt <= MAX_ALLOCATION_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<AllocationStrategy> pendingRequests = pending.stream().map(requests::get).toList();
+            List<Vehicle> assignment = batchAllocationEngine.assign(pendingRequests, fleetIndex.find(OPERATIONAL_SPEC));
+
+            List<Integer> lostIds = new ArrayList<>();
+            Map<Integer, Vehicle> claimed = DatabaseUtil.executeTransactionWithRetry(session -> {
+                lostIds.clear();
+                return claimVehicles(session, assignment, lostIds);
+            }, MAX_ALLOCATION_ATTEMPTS);
+            refreshIndex(lostIds);
+
+            List<Integer> unserved = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                Vehicle allocatedVehicle = claimed.get(i);
+                if (allocatedVehicle != null) {
+                    fleetIndex.put(allocatedVehicle);
+                    allocatedVehicles[pending.get(i)] = allocatedVehicle;
+                } else {
+                    unserved.add(pending.get(i));
+                }
+            }
+            //A vehicle taken concurrently means the index was behind: match the unserved requests again with what is left
+            pending = lostIds.isEmpty() ? List.of() : unserved;
+        }
+        if (logger.isDebugEnabled()) {
+            long served = Arrays.stream(allocatedVehicles).filter(Objects::nonNull).count();
+            logger.debug("{} of {} requests have been allocated a vehicle", served, requests.size());
+        }
+        return Arrays.asList(allocatedVehicles);
+    }
+
+    /**
+     * Releases the vehicle assigned to a driver, who reports the mileage it was returned with.
+     * The vehicle becomes available again and the driver can be allocated another one.
+     *
+     * @param username the username of the driver.
+     * @param newMileage the mileage of the vehicle on return.
+     * @return the released vehicle, or empty if the driver has no vehicle assigned.
+     * @throws IllegalArgumentException if there is no such user, or the mileage is lower than the recorded one.
+     */
+    public Optional<Vehicle> releaseVehicle(String username, double newMileage) {
+        if (userService.findUserByUsername(username).isEmpty()) {
+            throw new IllegalArgumentException("Unknown user: " + username);
+        }
+        //Set when the vehicle has a higher mileage; thrown once the transaction is over, as it is not a conflict
+        AtomicBoolean invalidMileage = new AtomicBoolean();
+        Vehicle releasedVehicle = DatabaseUtil.executeTransactionWithRetry(session -> {
+            User driver = userService.findUserByUsername(session, username).orElseThrow();
+            Vehicle vehicle = driver.getCar() != null ? driver.getCar() : driver.getTruck();
+            invalidMileage.set(vehicle != null && newMileage < vehicle.getMileage());
+            if (vehicle == null || invalidMileage.get()) {
+                return null;
+            }
+            driver.setCar(null);
+            driver.setTruck(null);
+            vehicle.removeObserver(driver);
+            vehicle.releaseVehicle(newMileage);
+            return vehicle;
+        }, MAX_ALLOCATION_ATTEMPTS);
+        if (invalidMileage.get()) {
+            throw new IllegalArgumentException(messages.getString("invalid.mileage"));
+        }
+        if (releasedVehicle == null) {
+            return Optional.empty();
         }
+        fleetIndex.put(releasedVehicle);
+        return Optional.of(releasedVehicle);
+    }
 
-        Optional<User> availableDriver = userService.findAvailableDriver();
-        if (!availableDriver.isPresent()) {
-            System.out.println(messages.getString("no.available.driver"));
-            return null;
+    /**
+     * Moves a vehicle that is not in use to another status, e.g. into maintenance and back.
+     * The change is a compare-and-set on the status and version of the vehicle, retried on the
+     * current state if a concurrent change got there first. Vehicles only get in and out of use
+     * through allocation and release, which also assign the driver.
+     *
+     * @param id the ID of the vehicle.
+     * @param status the new status, AVAILABLE or IN_MAINTENANCE.
+     * @return the vehicle with its new status, or empty if there is no such vehicle.
+     * @throws IllegalArgumentException if the new status is IN_USE.
+     * @throws IllegalStateException if the vehicle is in use.
+     */
+    public Optional<Vehicle> transitionStatus(int id, VehicleStatus status) {
+        if (status == VehicleStatus.IN_USE) {
+            throw new IllegalArgumentException("Vehicles are put in use by allocation only");
+        }
+        for (int attempt = 1; attempt <= MAX_ALLOCATION_ATTEMPTS; attempt++) {
+            Optional<Vehicle> current = fleetIndex.get(id);
+            if (current.isEmpty()) {
+                return Optional.empty();
+            }
+            Vehicle vehicle = current.get();
+            if (vehicle.getVehicleStatus() == status) {
+                return current;
+            }
+            if (vehicle.getVehicleStatus() == VehicleStatus.IN_USE) {
+                throw new IllegalStateException("Vehicle " + id + " is in use");
+            }
+            boolean changed = DatabaseUtil.executeTransactionWithRetry(session ->
+                    vehicleRepository.compareAndSetStatus(session, vehicle, vehicle.getVehicleStatus(), status),
+                    MAX_ALLOCATION_ATTEMPTS);
+            refreshIndex(List.of(id));
+            if (changed) {
+                statusNotifier.notifyObservers("Vehicle " + id + " status changed to: " + status);
+                return fleetIndex.get(id);
+            }
         }
+        throw new IllegalStateException("Vehicle " + id + " kept changing concurrently");
+    }
 
-        userService.allocateVehicleToDriver(availableDriver.get(), allocatedVehicle);
-        allocatedVehicle.setVehicleStatus(VehicleStatus.IN_USE);
-        updateVehicle(allocatedVehicle);
+    /**
+     * Ranks the best operational vehicles for a strategy, e.g. to offer a dispatcher alternatives.
+     * A strategy that ranks its vehicles by a key ({@link AllocationStrategy#getPriority()}) reads
+     * them from a {@link CandidateQueue} kept up to date with the fleet index; any other strategy
+     * ranks the candidates found by the {@link VehicleAllocationHandler} with
+     * {@link AllocationStrategy#rankTopK(List, int)}. Neither sorts the whole fleet.
+     *
+     * @param strategy the strategy used to rank the operational vehicles.
+     * @param count the maximum number of vehicles to return.
+     * @return up to {@code count} vehicles, best first.
+     */
+    public List<Vehicle> rankVehicles(AllocationStrategy strategy, int count) {
+        if (strategy.getPriority() != null) {
+            return candidateQueue(strategy, OPERATIONAL_SPEC).peek(count);
+        }
+        VehicleAllocationHandler allocationHandler = new VehicleAllocationHandler(strategy, OPERATIONAL_SPEC);
+        return strategy.rankTopK(allocationHandler.findCandidates(fleetIndex), count);
+    }
 
-        System.out.println("Vehicle with ID " + allocatedVehicle.getId() + " has been allocated to driver " + availableDriver.get().getUsername() + " (" + availableDriver.get().getFirstName() + " " + availableDriver.get().getLastName() + ")");
+    /**
+     * Ranks the best {@value #CLAIM_BATCH_SIZE} candidates for one allocation, together with the
+     * concurrent allocations of an equal strategy: the {@link AllocationCoalescer} of the service
+     * ranks them once for all the requests within {@value #COALESCING_WINDOW_MILLIS} ms with
+     * {@link #rankVehicles(AllocationStrategy, int)}, and gives each a different best vehicle.
+     *
+     * @param strategy the strategy of the allocation.
+     * @return completes with the candidates to claim, best first, or with an empty list if none is left.
+     */
+    public CompletableFuture<List<Vehicle>> rankCandidates(AllocationStrategy strategy) {
+        return allocationCoalescer.rankCandidates(strategy);
+    }
+
+    /**
+     * Describes the operand order the allocation specifications have learned: the operational
+     * filter and the specification shared by each strategy setting in use, with the pass rate and
+     * cost observed for each operand.
+     *
+     * @return the description of each specification, by name.
+     */
+    public Map<String, String> describeSpecifications() {
+        Map<String, String> descriptions = new LinkedHashMap<>();
+        descriptions.put("Operational", OPERATIONAL_SPEC.describe());
+        descriptions.putAll(SpecificationCompiler.describeShared());
+        return descriptions;
+    }
+
+    /**
+     * Claims the first of the given candidates that is still available and assigns it to an
+     * available driver, in one transaction. Candidates that were changed concurrently are
+     * reloaded into the fleet index.
+     *
+     * @param candidates the vehicles to claim, best first.
+     * @return the allocated vehicle, or null if no candidate or no driver was left.
+     */
+    public Vehicle claimVehicle(List<Vehicle> candidates) {
+        List<Integer> lostIds = new ArrayList<>();
+        Vehicle allocatedVehicle = DatabaseUtil.executeTransactionWithRetry(session -> {
+            lostIds.clear();
+            return claimVehicle(session, candidates, lostIds);
+        }, MAX_ALLOCATION_ATTEMPTS);
+        //The index was behind the database for the vehicles that could not be claimed
+        refreshIndex(lostIds);
+        if (allocatedVehicle != null) {
+            fleetIndex.put(allocatedVehicle);
+        }
         return allocatedVehicle;
     }
 
+    /**
+     * Claims the best candidate that is still available, in the order of the allocation strategy,
+     * and assigns it to an available driver.
+     *
+     * @param session the session of the running transaction.
+     * @param candidates the vehicles read before the transaction started, best first.
+     * @param lostIds collects the IDs of the candidates that were changed concurrently.
+     * @return the allocated vehicle, or null if no candidate or no driver was left, in which
+     * case the transaction is rolled back.
+     */
+    private Vehicle claimVehicle(Session session, List<Vehicle> candidates, List<Integer> lostIds) {
+        for (Vehicle candidate : candidates) {
+            if (vehicleRepository.compareAndSetStatus(session, candidate, VehicleStatus.AVAILABLE, VehicleStatus.IN_USE)) {
+                //Read the claimed row itself: a cached copy may predate the claim
+                Vehicle allocatedVehicle = session.byId(Hibernate.getClass(candidate))
+                        .with(CacheMode.REFRESH)
+                        .load(candidate.getId());
+                Optional<User> availableDriver = userService.findAvailableDriver(session);
+                if (!availableDriver.isPresent()) {
+                    session.getTransaction().setRollbackOnly();
+                    return null;
+                }
+                userService.allocateVehicleToDriver(session, availableDriver.get(), allocatedVehicle);
+
+                logger.debug("Vehicle with ID {} has been allocated to driver {}", allocatedVehicle.getId(), availableDriver.get().getUsername());
+                return allocatedVehicle;
+            }
+            lostIds.add(candidate.getId());
+        }
+        return null;
+    }
+
+    /**
+     * Claims the vehicles matched to a batch of requests that are still available and assigns
+     * each to an available driver. Claiming stops when no driver is left.
+     *
+     * @param session the session of the running transaction.
+     * @param assignment the vehicle matched to each request, or null.
+     * @param lostIds collects the IDs of the matched vehicles that were changed concurrently.
+     * @return the allocated vehicles by position of their request in the assignment.
+     */
+    private Map<Integer, Vehicle> claimVehicles(Session session, List<Vehicle> assignment, List<Integer> lostIds) {
+        Map<Integer, Vehicle> claimed = new HashMap<>();
+        int matched = (int) assignment.stream().filter(Objects::nonNull).count();
+        Iterator<User> drivers = null;
+        for (int i = 0; i < assignment.size() && (drivers == null || drivers.hasNext()); i++) {
+            Vehicle candidate = assignment.get(i);
+            if (candidate == null) {
+                continue;
+            }
+            if (!vehicleRepository.compareAndSetStatus(session, candidate, VehicleStatus.AVAILABLE, VehicleStatus.IN_USE)) {
+                lostIds.add(candidate.getId());
+                continue;
+            }
+            if (drivers == null) {
+                //Read the drivers once SQLite holds the write lock, so no concurrent allocation can take them
+                drivers = userService.findAvailableDrivers(session, matched).iterator();
+                if (!drivers.hasNext()) {
+                    session.getTransaction().setRollbackOnly();
+                    return Map.of();
+                }
+            }
+            //Read the claimed row itself: a cached copy may predate the claim
+            Vehicle allocatedVehicle = session.byId(Hibernate.getClass(candidate))
+                    .with(CacheMode.REFRESH)
+                    .load(candidate.getId());
+            userService.allocateVehicleToDriver(session, drivers.next(), allocatedVehicle);
+            claimed.put(i, allocatedVehicle);
+        }
+        return claimed;
+    }
+
+    /**
+     * Provides the queue of the operational vehicles eligible for a strategy, ranked by its priority.
+     * Queues are shared by equal strategies and the least recently used ones are dropped.
+     *
+     * @param strategy the strategy, which must have a priority.
+     * @param operationalSpec the specification every candidate must satisfy.
+     * @return the candidate queue.
+     */
+    private CandidateQueue candidateQueue(AllocationStrategy strategy, Specification<Vehicle> operationalSpec) {
+        synchronized (candidateQueues) {
+            CandidateQueue queue = candidateQueues.get(strategy);
+            if (queue == null) {
+                queue = CandidateQueue.create(fleetIndex,
+                        vehicle -> operationalSpec.isSatisfiedBy(vehicle) && strategy.isEligible(vehicle),
+                        strategy.getPriority());
+                candidateQueues.put(strategy, queue);
+                if (candidateQueues.size() > MAX_CANDIDATE_QUEUES) {
+                    Iterator<CandidateQueue> eldest = candidateQueues.values().iterator();
+                    eldest.next().close();
+                    eldest.remove();
+                }
+            }
+            return queue;
+        }
+    }
+
+    /**
+     * Reloads the given vehicles from the database into the fleet index, and drops the ones
+     * that no longer exist.
+     *
+     * @param ids the IDs of the vehicles to reload.
+     */
+    private void refreshIndex(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Integer> missingIds = new HashSet<>(ids);
+        for (Vehicle vehicle : vehicleRepository.findAllById(ids)) {
+            fleetIndex.put(vehicle);
+            missingIds.remove(vehicle.getId());
+        }
+        fleetIndex.removeAll(missingIds);
+    }
+
     /**
      * Selects the appropriate allocation strategy based on user input.
      *
      * @return the selected allocation strategy.
      */
     private AllocationStrategy selectStrategy() {
-        Scanner scanner = new Scanner(System.in);
+        return readAllocationRequest(new Scanner(System.in)).toStrategy();
+    }
 
+    /**
+     * Asks the user what the vehicle is needed for.
+     * The follow-up questions depend on whether the vehicle is for cargo or passenger use.
+     *
+     * @param scanner the scanner to read user input.
+     * @return the request described by the user.
+     */
+    private AllocationRequest readAllocationRequest(Scanner scanner) {
         System.out.println(messages.getString("vehicle.allocate.cargo"));
         String cargoResponse = scanner.nextLine().trim().toLowerCase();
 
         if ("yes".equals(cargoResponse)) {
-            return handleCargoRequest(scanner);
+            return readCargoRequest(scanner);
         } else {
-            return handlePassengerRequest(scanner);
+            return readPassengerRequest(scanner);
         }
     }
 
     /**
-     * Handles the cargo allocation request by prompting the user for additional details.
+     * Prompts the user for the details of a cargo request.
      *
      * @param scanner the scanner to read user input.
-     * @return the selected cargo allocation strategy.
+     * @return the cargo request.
      */
-    private AllocationStrategy handleCargoRequest(Scanner scanner) {
+    private AllocationRequest readCargoRequest(Scanner scanner) {
         System.out.println(messages.getString("vehicle.allocate.refrigeration"));
         String refrigerationResponse = scanner.nextLine().trim().toLowerCase();
 
         if ("yes".equals(refrigerationResponse)) {
-            return new RefrigerationStrategy();
+            return AllocationRequest.forCargo(true, 0);
         } else {
             System.out.println(messages.getString("vehicle.allocate.capacity"));
             double minCargoCapacity = scanner.nextDouble();
-            if (minCargoCapacity > 0) {
-                return new CargoPriorityStrategy(minCargoCapacity);
-            } else {
-                return new NonRefrigeratedHighSpeedStrategy();
-            }
+            return AllocationRequest.forCargo(false, minCargoCapacity);
         }
     }
 
     /**
-     * Handles the passenger allocation request by prompting the user for additional details.
+     * Prompts the user for the details of a passenger request.
      *
      * @param scanner the scanner to read user input.
-     * @return the selected passenger allocation strategy.
+     * @return the passenger request.
      */
-    private AllocationStrategy handlePassengerRequest(Scanner scanner) {
+    private AllocationRequest readPassengerRequest(Scanner scanner) {
         System.out.println(messages.getString("vehicle.allocate.comfort"));
         String comfortResponse = scanner.nextLine().trim().toLowerCase();
 
         if ("yes".equals(comfortResponse)) {
             System.out.println(messages.getString("vehicle.allocate.passenger_capacity"));
             int minPassengerCapacity = scanner.nextInt();
-            return new ComfortPriorityStrategy(minPassengerCapacity);
+            return AllocationRequest.forPassengers(true, minPassengerCapacity);
         } else {
-            return new FuelEfficientStrategy();
+            return AllocationRequest.forPassengers(false, 0);
         }
     }
 }
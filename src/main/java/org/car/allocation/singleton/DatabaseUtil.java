@@ -1,8 +1,24 @@
 package org.car.allocation.singleton;
 
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.query.SelectionQuery;
+import org.hibernate.stat.Statistics;
+
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utility singleton class for managing Hibernate database operations.
@@ -15,6 +31,9 @@ import org.hibernate.Transaction;
  */
 public class DatabaseUtil {
     private static final SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+    private static final int DEFAULT_CONNECTION_POOL_SIZE = 15;
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
 
     /**
      * Opens a new Hibernate session.
@@ -24,6 +43,84 @@ public class DatabaseUtil {
         return sessionFactory.openSession();
     }
 
+    /**
+     * Retrieves the JDBC batch size configured by {@code hibernate.jdbc.batch_size},
+     * or 1 if batching is not configured.
+     * @return the number of statements sent to the database in one batch
+     */
+    public static int getJdbcBatchSize() {
+        Object batchSize = sessionFactory.getProperties().get("hibernate.jdbc.batch_size");
+        return batchSize == null ? 1 : Math.max(1, Integer.parseInt(batchSize.toString().trim()));
+    }
+
+    /**
+     * Retrieves the maximum size of the connection pool configured by {@code hibernate.c3p0.max_size},
+     * or the c3p0 default of {@value #DEFAULT_CONNECTION_POOL_SIZE} if it is not set.
+     * @return the maximum number of connections open at once
+     */
+    public static int getConnectionPoolSize() {
+        Object maxSize = sessionFactory.getProperties().get("hibernate.c3p0.max_size");
+        return maxSize == null ? DEFAULT_CONNECTION_POOL_SIZE : Integer.parseInt(maxSize.toString().trim());
+    }
+
+    /**
+     * Retrieves the statistics collected by the SessionFactory, including the hit, miss
+     * and put counts of the second-level cache and the query cache.
+     * @return the statistics of the SessionFactory
+     */
+    public static Statistics getStatistics() {
+        return sessionFactory.getStatistics();
+    }
+
+    /**
+     * Opens a new stateless Hibernate session. Entities read through it are not kept
+     * in a persistence context, so memory use does not grow with the number of rows read.
+     * @return a new stateless session
+     */
+    public static StatelessSession openStatelessSession() {
+        return sessionFactory.openStatelessSession();
+    }
+
+    /**
+     * Streams the results of a query through a forward-only database cursor.
+     * A stateless session is opened for the query and stays open only for the life of the
+     * stream: it is released when the stream is closed, so callers must close the stream,
+     * ideally with try-with-resources.
+     * @param query builds the query to run on the stateless session backing the stream
+     * @param fetchSize the number of rows the driver fetches per round trip, or 0 for the configured default
+     * @return a lazily populated stream of the query results
+     */
+    public static <T> Stream<T> stream(StreamQuery<T> query, int fetchSize) {
+        StatelessSession session = openStatelessSession();
+        try {
+            SelectionQuery<T> selectionQuery = query.create(session);
+            if (fetchSize > 0) {
+                selectionQuery.setFetchSize(fetchSize);
+            }
+            ScrollableResults<T> results = selectionQuery.scroll(ScrollMode.FORWARD_ONLY);
+            Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    if (!results.next()) {
+                        return false;
+                    }
+                    action.accept(results.get());
+                    return true;
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    results.close();
+                } finally {
+                    session.close();
+                }
+            });
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
     /**
      * Executes a database operation within a transaction.
      * @param operation the operation to execute
@@ -43,6 +140,110 @@ public class DatabaseUtil {
         }
     }
 
+    /**
+     * Executes a database operation that produces a result within a transaction.
+     * Everything the operation reads and writes goes through one session and is
+     * committed at once, so the operation sees a single consistent state of the database.
+     * @param operation the operation to execute
+     * @return the result of the operation
+     */
+    public static <R> R executeTransactionWithResult(DatabaseFunction<R> operation) {
+        try {
+            return runTransaction(operation);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("Database transaction failed", e);
+        }
+    }
+
+    /**
+     * Executes a database operation that produces a result within a transaction, and runs it
+     * again in a new transaction whenever it loses a race against a concurrent writer: either an
+     * entity it changed was updated by someone else since it was read (its version no longer
+     * matches), or SQLite refused the write because another transaction committed first.
+     * Every attempt reads the current state, so the operation can decide differently the next time.
+     * @param operation the operation to execute
+     * @param maxAttempts the maximum number of times the operation is run
+     * @return the result of the operation
+     */
+    public static <R> R executeTransactionWithRetry(DatabaseFunction<R> operation, int maxAttempts) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return runTransaction(operation);
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !isConflict(e)) {
+                    e.printStackTrace();
+                    throw new RuntimeException("Database transaction failed", e);
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Runs an operation in a new session and transaction, rolling back if it fails.
+     * @param operation the operation to run
+     * @return the result of the operation
+     */
+    private static <R> R runTransaction(DatabaseFunction<R> operation) {
+        try (Session session = openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                R result = operation.apply(session);
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                //Roll back while the session is still open, keeping the original failure
+                if (transaction.getStatus().canRollback()) {
+                    try {
+                        transaction.rollback();
+                    } catch (RuntimeException rollbackFailure) {
+                        e.addSuppressed(rollbackFailure);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a failure was caused by a concurrent transaction, so that running the
+     * transaction again can succeed.
+     * @param failure the failure of the transaction
+     * @return true if the transaction lost a race against another one
+     */
+    private static boolean isConflict(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException
+                    || cause instanceof StaleStateException
+                    || cause instanceof LockAcquisitionException) {
+                return true;
+            }
+            //SQLITE_BUSY or SQLITE_LOCKED, including extended codes such as SQLITE_BUSY_SNAPSHOT
+            if (cause instanceof SQLException sqlException) {
+                int primaryCode = sqlException.getErrorCode() & 0xFF;
+                if (primaryCode == SQLITE_BUSY || primaryCode == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits a random, growing time before the next attempt, so that transactions that
+     * conflicted do not collide again right away.
+     * @param attempt the number of the attempt that failed
+     */
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L << Math.min(attempt, 5)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying a database transaction", e);
+        }
+    }
+
     /**
      * Functional interface for database operations.
      */
@@ -50,4 +251,20 @@ public class DatabaseUtil {
     public interface DatabaseOperation {
         void execute(Session session);
     }
+
+    /**
+     * Functional interface for database operations that produce a result.
+     */
+    @FunctionalInterface
+    public interface DatabaseFunction<R> {
+        R apply(Session session);
+    }
+
+    /**
+     * Functional interface for building the query behind a result stream.
+     */
+    @FunctionalInterface
+    public interface StreamQuery<T> {
+        SelectionQuery<T> create(StatelessSession session);
+    }
 }
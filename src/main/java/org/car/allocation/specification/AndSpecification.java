@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.FleetColumns;
+
 /**
  * A composite specification that combines two specifications with a logical AND operation.
  * This means an object satisfies this specification only if it satisfies both of the combined specifications.
@@ -15,11 +20,39 @@ public class AndSpecification<T> implements Specification<T> {
         this.spec2 = spec2;
     }
 
+    /**
+     * Retrieves the first of the combined specifications.
+     * @return the left operand
+     */
+    public Specification<T> getSpec1() {
+        return spec1;
+    }
+
+    /**
+     * Retrieves the second of the combined specifications.
+     * @return the right operand
+     */
+    public Specification<T> getSpec2() {
+        return spec2;
+    }
+
     @Override
     public boolean isSatisfiedBy(T t) {
         return spec1.isSatisfiedBy(t) && spec2.isSatisfiedBy(t);
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends T> root, CriteriaBuilder criteriaBuilder) {
+        return criteriaBuilder.and(spec1.toPredicate(root, criteriaBuilder), spec2.toPredicate(root, criteriaBuilder));
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        //The second specification only scans the rows that passed the first
+        long matching = spec1.scan(columns, base, mask);
+        return matching == 0 ? 0 : spec2.scan(columns, base, matching);
+    }
+
     /**
      * Combines this specification with another using a logical AND operation.
      *
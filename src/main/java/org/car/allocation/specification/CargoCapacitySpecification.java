@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.ColumnKernels;
+import org.car.allocation.index.FleetColumns;
 import org.car.allocation.model.Truck;
 import org.car.allocation.model.Vehicle;
 /**
@@ -13,6 +18,20 @@ public class CargoCapacitySpecification implements Specification<Vehicle> {
         this.minCargoCapacity = minCargoCapacity;
     }
 
+    /**
+     * Retrieves the minimum cargo capacity a truck must have.
+     * @return the minimum cargo capacity
+     */
+    public double getMinCargoCapacity() {
+        return minCargoCapacity;
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        long trucks = ColumnKernels.equalTo(columns.kind(), base, mask, FleetColumns.KIND_TRUCK);
+        return trucks == 0 ? 0 : ColumnKernels.atLeast(columns.cargoCapacity(), base, trucks, minCargoCapacity);
+    }
+
     /**
      * Checks whether the specified vehicle satisfies the cargo capacity requirement.
      *
@@ -28,6 +47,20 @@ public class CargoCapacitySpecification implements Specification<Vehicle> {
         return false; //Only apply to trucks
     }
 
+    /**
+     * Builds the database predicate for the cargo capacity requirement.
+     * Rows of any type other than {@link Truck} never match.
+     *
+     * @param root the query root.
+     * @param criteriaBuilder the criteria builder.
+     * @return the cargo capacity predicate.
+     */
+    @Override
+    public Predicate toPredicate(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder) {
+        return VehicleCriteria.restrictTo(root, criteriaBuilder, Truck.class,
+                truck -> criteriaBuilder.greaterThanOrEqualTo(truck.<Double>get("cargoCapacity"), minCargoCapacity));
+    }
+
     /**
      * Combines this specification with another using a logical AND operation.
      *
@@ -0,0 +1,119 @@
+package org.car.allocation.specification;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.FleetColumns;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A specification compiled by the {@link SpecificationCompiler}.
+ * {@link #isSatisfiedBy(Object)} invokes the fused predicate; queries and column scans use the
+ * normalized specification it was compiled from.
+ * <p>
+ * One evaluation in {@link #SAMPLE_INTERVAL}, and one scanned block of the fleet columns in
+ * {@link #SCAN_SAMPLE_INTERVAL}, is sampled: every operand is evaluated and timed (see
+ * {@link SpecificationProfile}). After every {@link #REORDER_INTERVAL} samples the operands
+ * of each AND and OR are reordered so the most selective, cheapest ones short-circuit first,
+ * and the predicate is compiled again if the order changed; column scans use the new order too.
+ * Every change of order is logged, and {@link #describe()} reports the order in use.
+ * </p>
+ *
+ * @param <T> the type of object this specification can be applied to.
+ */
+public final class CompiledSpecification<T> implements Specification<T> {
+    static final int SAMPLE_INTERVAL = 1024;
+    static final int SCAN_SAMPLE_INTERVAL = 16;
+    static final int REORDER_INTERVAL = 64;
+    private static final Logger logger = LoggerFactory.getLogger(CompiledSpecification.class);
+
+    private final SpecificationProfile<T> profile;
+    private final AtomicLong samples = new AtomicLong();
+    private volatile Specification<T> specification;
+    private volatile java.util.function.Predicate<Object> predicate;
+    //Not atomic: a lost increment only delays the next sample
+    private int evaluations;
+    private int scans;
+
+    CompiledSpecification(Specification<T> specification) {
+        this.profile = new SpecificationProfile<>(specification);
+        this.specification = specification;
+        this.predicate = SpecificationCompiler.fuse(specification);
+    }
+
+    /**
+     * Retrieves the normalized specification this one was compiled from, with the operands
+     * in the order currently used.
+     * @return the normalized specification
+     */
+    public Specification<T> getSpecification() {
+        return specification;
+    }
+
+    /**
+     * Describes the order in which the operands are evaluated, with the pass rate and cost
+     * observed for each.
+     * @return the description, e.g. {@code AND(RefrigerationUnitSpecification [pass 48%, 0.35 ns], ...)}
+     */
+    public String describe() {
+        return profile.describe();
+    }
+
+    @Override
+    public boolean isSatisfiedBy(T t) {
+        if (++evaluations % SAMPLE_INTERVAL == 0) {
+            boolean result = profile.sample(t);
+            countSample();
+            return result;
+        }
+        return predicate.test(t);
+    }
+
+    private void countSample() {
+        if (samples.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+    }
+
+    private synchronized void reorder() {
+        if (profile.reorder()) {
+            Specification<T> reordered = profile.toSpecification();
+            predicate = SpecificationCompiler.fuse(reordered);
+            specification = reordered;
+            logger.info("Reordered the operands of a compiled specification: {}", profile.describe());
+        }
+    }
+
+    @Override
+    public Predicate toPredicate(Root<? extends T> root, CriteriaBuilder criteriaBuilder) {
+        return specification.toPredicate(root, criteriaBuilder);
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        if (++scans % SCAN_SAMPLE_INTERVAL == 0 && mask != 0) {
+            long result = profile.sampleScan(columns, base, mask);
+            countSample();
+            return result;
+        }
+        return specification.scan(columns, base, mask);
+    }
+
+    @Override
+    public Specification<T> and(Specification<T> other) {
+        return new AndSpecification<>(specification, other);
+    }
+
+    @Override
+    public Specification<T> or(Specification<T> other) {
+        return new OrSpecification<>(specification, other);
+    }
+
+    @Override
+    public Specification<T> not() {
+        return specification.not();
+    }
+}
@@ -0,0 +1,59 @@
+package org.car.allocation.specification;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.FleetColumns;
+
+/**
+ * A specification that is satisfied by every object or by none.
+ * The {@link SpecificationCompiler} folds operands whose outcome is known in advance into it,
+ * e.g. two different required statuses combined with AND.
+ *
+ * @param <T> the type of object this specification can be applied to.
+ */
+final class ConstantSpecification<T> implements Specification<T> {
+    private final boolean value;
+
+    private ConstantSpecification(boolean value) {
+        this.value = value;
+    }
+
+    static <T> ConstantSpecification<T> of(boolean value) {
+        return new ConstantSpecification<>(value);
+    }
+
+    boolean getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean isSatisfiedBy(T t) {
+        return value;
+    }
+
+    @Override
+    public Predicate toPredicate(Root<? extends T> root, CriteriaBuilder criteriaBuilder) {
+        return value ? criteriaBuilder.conjunction() : criteriaBuilder.disjunction();
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        return value ? mask : 0;
+    }
+
+    @Override
+    public Specification<T> and(Specification<T> other) {
+        return value ? other : this;
+    }
+
+    @Override
+    public Specification<T> or(Specification<T> other) {
+        return value ? this : other;
+    }
+
+    @Override
+    public Specification<T> not() {
+        return of(!value);
+    }
+}
@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.ColumnKernels;
+import org.car.allocation.index.FleetColumns;
 import org.car.allocation.model.Vehicle;
 import org.car.allocation.util.EngineType;
 
@@ -14,6 +19,19 @@ public class EngineTypeSpecification implements Specification<Vehicle> {
         this.engineType = engineType;
     }
 
+    /**
+     * Retrieves the engine type a vehicle must have.
+     * @return the required engine type
+     */
+    public EngineType getEngineType() {
+        return engineType;
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        return ColumnKernels.equalTo(columns.engineType(), base, mask, (byte) engineType.ordinal());
+    }
+
     /**
      * A specification to filter vehicles based on their engine type.
      * This specification is applicable to any vehicle with an {@link EngineType}.
@@ -23,6 +41,18 @@ public class EngineTypeSpecification implements Specification<Vehicle> {
         return vehicle.getEngineType() == engineType;
     }
 
+    /**
+     * Builds the database predicate matching the engine type column.
+     *
+     * @param root the query root.
+     * @param criteriaBuilder the criteria builder.
+     * @return the engine type predicate.
+     */
+    @Override
+    public Predicate toPredicate(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder) {
+        return criteriaBuilder.equal(root.get("engineType"), engineType);
+    }
+
     /**
      * Combines this specification with another using a logical AND operation.
      *
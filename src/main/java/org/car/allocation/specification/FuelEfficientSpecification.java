@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.ColumnKernels;
+import org.car.allocation.index.FleetColumns;
 import org.car.allocation.model.Vehicle;
 import org.car.allocation.util.EngineType;
 /**
@@ -17,6 +22,30 @@ public class FuelEfficientSpecification implements Specification<Vehicle> {
         this.minSpeed = minSpeed;
     }
 
+    /**
+     * Retrieves the engine type a vehicle must have.
+     * @return the required engine type
+     */
+    public EngineType getPreferredEngineType() {
+        return preferredEngineType;
+    }
+
+    /**
+     * Retrieves the highest mileage a vehicle may have.
+     * @return the maximum mileage
+     */
+    public double getMaxMileage() {
+        return maxMileage;
+    }
+
+    /**
+     * Retrieves the lowest maximum speed a vehicle may have.
+     * @return the minimum of the maximum speed
+     */
+    public double getMinSpeed() {
+        return minSpeed;
+    }
+
     @Override
     public boolean isSatisfiedBy(Vehicle vehicle) {
         if (vehicle.getEngineType() == preferredEngineType) {
@@ -25,6 +54,23 @@ public class FuelEfficientSpecification implements Specification<Vehicle> {
         return false; //Not relevant if the vehicle does not match the engine type
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder) {
+        return criteriaBuilder.and(
+                criteriaBuilder.equal(root.get("engineType"), preferredEngineType),
+                criteriaBuilder.lessThanOrEqualTo(root.<Double>get("mileage"), maxMileage),
+                criteriaBuilder.greaterThanOrEqualTo(root.<Double>get("maxSpeed"), minSpeed));
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        long result = ColumnKernels.equalTo(columns.engineType(), base, mask, (byte) preferredEngineType.ordinal());
+        if (result != 0) {
+            result = ColumnKernels.atMost(columns.mileage(), base, result, maxMileage);
+        }
+        return result == 0 ? 0 : ColumnKernels.atLeast(columns.maxSpeed(), base, result, minSpeed);
+    }
+
     @Override
     public Specification<Vehicle> and(Specification<Vehicle> other) {
         return new AndSpecification<>(this, other);
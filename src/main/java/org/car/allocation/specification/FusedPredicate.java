@@ -0,0 +1,45 @@
+package org.car.allocation.specification;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.function.Predicate;
+
+/**
+ * The fused predicate of a {@link CompiledSpecification}.
+ * <p>
+ * This class is never initialized under its own name: it is the template of the hidden class the
+ * {@link SpecificationCompiler} defines for every predicate it emits, with the method handle as
+ * class data. The handle is then held in a {@code static final} field, which the JIT treats as
+ * a constant, so it inlines the whole tree of combinators and leaves into {@link #test(Object)}
+ * instead of calling through an opaque handle.
+ * </p>
+ */
+final class FusedPredicate implements Predicate<Object> {
+    private static final MethodHandle PREDICATE;
+
+    static {
+        try {
+            PREDICATE = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Evaluates the predicate.
+     *
+     * @param t the object to evaluate.
+     * @return whether the object satisfies the compiled specification.
+     */
+    @Override
+    public boolean test(Object t) {
+        try {
+            return (boolean) PREDICATE.invokeExact(t);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
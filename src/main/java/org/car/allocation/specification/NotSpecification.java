@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.FleetColumns;
+
 /**
  * A specification that negates another specification.
  * This is used to create a condition where the criteria of the provided specification are not met.
@@ -13,11 +18,29 @@ public class NotSpecification<T> implements Specification<T> {
         this.spec = spec;
     }
 
+    /**
+     * Retrieves the negated specification.
+     * @return the operand
+     */
+    public Specification<T> getSpec() {
+        return spec;
+    }
+
     @Override
     public boolean isSatisfiedBy(T t) {
         return !spec.isSatisfiedBy(t);
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends T> root, CriteriaBuilder criteriaBuilder) {
+        return criteriaBuilder.not(spec.toPredicate(root, criteriaBuilder));
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        return mask & ~spec.scan(columns, base, mask);
+    }
+
     @Override
     public Specification<T> and(Specification<T> other) {
         return new AndSpecification<>(this, other);
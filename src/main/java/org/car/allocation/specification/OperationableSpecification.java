@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.ColumnKernels;
+import org.car.allocation.index.FleetColumns;
 import org.car.allocation.model.Vehicle;
 import org.car.allocation.util.VehicleStatus;
 
@@ -14,12 +19,33 @@ public class OperationableSpecification implements Specification<Vehicle> {
         this.minFuelLevel = minFuelLevel;
     }
 
+    /**
+     * Retrieves the minimum fuel level of an operational vehicle.
+     * @return the minimum fuel level
+     */
+    public double getMinFuelLevel() {
+        return minFuelLevel;
+    }
+
     @Override
     public boolean isSatisfiedBy(Vehicle vehicle) {
         return vehicle.getVehicleStatus() == VehicleStatus.AVAILABLE
                 && vehicle.getFuelLevel() >= minFuelLevel;
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder) {
+        return criteriaBuilder.and(
+                criteriaBuilder.equal(root.get("vehicleStatus"), VehicleStatus.AVAILABLE),
+                criteriaBuilder.greaterThanOrEqualTo(root.<Double>get("fuelLevel"), minFuelLevel));
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        long available = ColumnKernels.equalTo(columns.status(), base, mask, (byte) VehicleStatus.AVAILABLE.ordinal());
+        return available == 0 ? 0 : ColumnKernels.atLeast(columns.fuelLevel(), base, available, minFuelLevel);
+    }
+
     @Override
     public Specification<Vehicle> and(Specification<Vehicle> other) {
         return new AndSpecification<>(this, other);
@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.FleetColumns;
+
 /**
  * A specification that evaluates the logical OR operation between two specifications.
  *
@@ -14,11 +19,40 @@ public class OrSpecification<T> implements Specification<T> {
         this.spec2 = spec2;
     }
 
+    /**
+     * Retrieves the first of the combined specifications.
+     * @return the left operand
+     */
+    public Specification<T> getSpec1() {
+        return spec1;
+    }
+
+    /**
+     * Retrieves the second of the combined specifications.
+     * @return the right operand
+     */
+    public Specification<T> getSpec2() {
+        return spec2;
+    }
+
     @Override
     public boolean isSatisfiedBy(T t) {
         return spec1.isSatisfiedBy(t) || spec2.isSatisfiedBy(t);
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends T> root, CriteriaBuilder criteriaBuilder) {
+        return criteriaBuilder.or(spec1.toPredicate(root, criteriaBuilder), spec2.toPredicate(root, criteriaBuilder));
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        //The second specification only scans the rows that failed the first
+        long matching = spec1.scan(columns, base, mask);
+        long remaining = mask & ~matching;
+        return remaining == 0 ? matching : matching | spec2.scan(columns, base, remaining);
+    }
+
     @Override
     public Specification<T> and(Specification<T> other) {
         return new AndSpecification<>(this, other);
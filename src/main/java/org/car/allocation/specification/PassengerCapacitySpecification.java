@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.ColumnKernels;
+import org.car.allocation.index.FleetColumns;
 import org.car.allocation.model.Car;
 import org.car.allocation.model.Vehicle;
 
@@ -15,6 +20,14 @@ public class PassengerCapacitySpecification implements Specification<Vehicle> {
         this.minPassengerCapacity = minPassengerCapacity;
     }
 
+    /**
+     * Retrieves the minimum passenger capacity a car must have.
+     * @return the minimum passenger capacity
+     */
+    public int getMinPassengerCapacity() {
+        return minPassengerCapacity;
+    }
+
     @Override
     public boolean isSatisfiedBy(Vehicle vehicle) {
         if (vehicle instanceof Car) {
@@ -24,6 +37,18 @@ public class PassengerCapacitySpecification implements Specification<Vehicle> {
         return false; //Only applies to cars
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder) {
+        return VehicleCriteria.restrictTo(root, criteriaBuilder, Car.class,
+                car -> criteriaBuilder.greaterThanOrEqualTo(car.<Integer>get("passengerCapacity"), minPassengerCapacity));
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        long cars = ColumnKernels.equalTo(columns.kind(), base, mask, FleetColumns.KIND_CAR);
+        return cars == 0 ? 0 : ColumnKernels.atLeast(columns.passengerCapacity(), base, cars, minPassengerCapacity);
+    }
+
     @Override
     public Specification<Vehicle> and(Specification<Vehicle> other) {
         return new AndSpecification<>(this, other);
@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.ColumnKernels;
+import org.car.allocation.index.FleetColumns;
 import org.car.allocation.model.Truck;
 import org.car.allocation.model.Vehicle;
 
@@ -17,6 +22,14 @@ public class RefrigerationUnitSpecification implements Specification<Vehicle> {
         this.requiresRefrigeration = requiresRefrigeration;
     }
 
+    /**
+     * Tells whether a truck must have a refrigeration unit or must not have one.
+     * @return true if the truck must have a refrigeration unit
+     */
+    public boolean requiresRefrigeration() {
+        return requiresRefrigeration;
+    }
+
     @Override
     public boolean isSatisfiedBy(Vehicle vehicle) {
         if (vehicle instanceof Truck) {
@@ -26,6 +39,19 @@ public class RefrigerationUnitSpecification implements Specification<Vehicle> {
         return false; //Only apply to trucks
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder) {
+        return VehicleCriteria.restrictTo(root, criteriaBuilder, Truck.class,
+                truck -> criteriaBuilder.equal(truck.get("hasRefrigerationUnit"), requiresRefrigeration));
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        long trucks = ColumnKernels.equalTo(columns.kind(), base, mask, FleetColumns.KIND_TRUCK);
+        return trucks == 0 ? 0
+                : ColumnKernels.equalTo(columns.refrigerated(), base, trucks, (byte) (requiresRefrigeration ? 1 : 0));
+    }
+
     @Override
     public Specification<Vehicle> and(Specification<Vehicle> other) {
         return new AndSpecification<>(this, other);
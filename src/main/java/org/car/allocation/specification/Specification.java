@@ -1,4 +1,10 @@
 package org.car.allocation.specification;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.FleetColumns;
+
 /**
  * A generic specification interface that defines methods for evaluating whether
  * an object satisfies certain criteria. It allows combining specifications using
@@ -11,4 +17,37 @@ public interface Specification<T> {
     Specification<T> and(Specification<T> other);
     Specification<T> or(Specification<T> other);
     Specification<T> not();
+
+    /**
+     * Translates this specification into a JPA Criteria predicate, so the same criteria
+     * can be evaluated by the database instead of in memory.
+     *
+     * @param root the query root the predicate is built against.
+     * @param criteriaBuilder the builder used to create the predicate.
+     * @return a predicate equivalent to {@link #isSatisfiedBy(Object)}.
+     */
+    Predicate toPredicate(Root<? extends T> root, CriteriaBuilder criteriaBuilder);
+
+    /**
+     * Evaluates this specification on a block of up to 64 consecutive rows of a columnar fleet
+     * snapshot. Bit {@code i} of the mask stands for row {@code base + i}; only the rows whose bit
+     * is set are evaluated. Built-in specifications read the primitive columns directly; this
+     * default reads the vehicle object of each row through {@link #isSatisfiedBy(Object)}.
+     *
+     * @param columns the columnar fleet snapshot.
+     * @param base the first row of the block, a multiple of 64.
+     * @param mask the rows of the block to evaluate.
+     * @return the subset of the mask whose rows satisfy this specification.
+     */
+    @SuppressWarnings("unchecked")
+    default long scan(FleetColumns columns, int base, long mask) {
+        long result = 0;
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            int row = base + Long.numberOfTrailingZeros(remaining);
+            if (isSatisfiedBy((T) columns.vehicleAt(row))) {
+                result |= remaining & -remaining;
+            }
+        }
+        return result;
+    }
 }
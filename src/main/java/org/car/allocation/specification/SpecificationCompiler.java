@@ -0,0 +1,347 @@
+package org.car.allocation.specification;
+
+import org.car.allocation.model.Vehicle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Compiles a tree of specifications into a single fused predicate.
+ * <p>
+ * The tree is first normalized: nested ANDs and ORs are flattened into one list of operands,
+ * double negations are removed, and operands whose combination is known in advance are folded
+ * (two thresholds on the same attribute keep the stricter one under AND and the looser one under
+ * OR, two different required statuses under AND can never match, {@code x OR NOT x} always
+ * matches, ...). The normalized tree is then turned into one {@link MethodHandle} made of
+ * {@code guardWithTest} combinators over the {@code isSatisfiedBy} method of each leaf, bound
+ * to the leaf instance. Evaluating it does not go through the AND/OR/NOT classes, and each leaf
+ * is called directly on its own class. Each handle is installed as a constant in its own hidden
+ * class, defined from the {@link FusedPredicate} template, so the JIT can inline it.
+ * </p>
+ */
+public final class SpecificationCompiler {
+    private static final MethodType PREDICATE_TYPE = MethodType.methodType(boolean.class, Object.class);
+    private static final MethodHandle IS_SATISFIED_BY;
+    private static final MethodHandle NOT;
+    private static final MethodHandle ALWAYS;
+    private static final MethodHandle NEVER;
+    private static final byte[] FUSED_PREDICATE_TEMPLATE;
+    private static final int MAX_SHARED_SPECIFICATIONS = 64;
+    //Specifications compiled once per setting, least recently used first
+    private static final Map<String, CompiledSpecification<?>> sharedSpecifications = new LinkedHashMap<>(16, 0.75f, true);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            IS_SATISFIED_BY = lookup.findVirtual(Specification.class, "isSatisfiedBy", PREDICATE_TYPE);
+            NOT = lookup.findStatic(SpecificationCompiler.class, "not",
+                    MethodType.methodType(boolean.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        ALWAYS = constant(true);
+        NEVER = constant(false);
+        try (InputStream template = FusedPredicate.class.getResourceAsStream(FusedPredicate.class.getSimpleName() + ".class")) {
+            if (template == null) {
+                throw new ExceptionInInitializerError("Missing the class file of " + FusedPredicate.class.getName());
+            }
+            FUSED_PREDICATE_TEMPLATE = template.readAllBytes();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private SpecificationCompiler() {}
+
+    /**
+     * Compiles a specification into a fused predicate.
+     *
+     * @param specification the specification to compile.
+     * @param <T> the type of object the specification can be applied to.
+     * @return the compiled specification, equivalent to the given one.
+     */
+    public static <T> CompiledSpecification<T> compile(Specification<T> specification) {
+        if (specification instanceof CompiledSpecification<T> compiled) {
+            return compiled;
+        }
+        Specification<T> normalized = normalize(specification);
+        return new CompiledSpecification<>(normalized);
+    }
+
+    /**
+     * Compiles a specification once per setting, and shares it with every caller that asks for
+     * the same setting, e.g. every strategy built for the same request parameters. A shared
+     * specification learns its operand order from all of them (see {@link CompiledSpecification}).
+     * The {@value #MAX_SHARED_SPECIFICATIONS} most recently used settings are kept.
+     *
+     * @param setting identifies the specification, e.g. {@code "CargoPriorityStrategy(1000.0)"}.
+     * @param specification builds the specification if the setting is not compiled yet.
+     * @param <T> the type of object the specification can be applied to.
+     * @return the compiled specification shared for the setting.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompiledSpecification<T> compileShared(String setting, Supplier<Specification<T>> specification) {
+        synchronized (sharedSpecifications) {
+            CompiledSpecification<T> compiled = (CompiledSpecification<T>) sharedSpecifications.get(setting);
+            if (compiled == null) {
+                compiled = compile(specification.get());
+                sharedSpecifications.put(setting, compiled);
+                if (sharedSpecifications.size() > MAX_SHARED_SPECIFICATIONS) {
+                    Iterator<CompiledSpecification<?>> eldest = sharedSpecifications.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return compiled;
+        }
+    }
+
+    /**
+     * Describes the operand order of every shared specification (see {@link CompiledSpecification#describe()}).
+     * @return the description of each setting, least recently used first.
+     */
+    public static Map<String, String> describeShared() {
+        Map<String, String> descriptions = new LinkedHashMap<>();
+        synchronized (sharedSpecifications) {
+            sharedSpecifications.forEach((setting, compiled) -> descriptions.put(setting, compiled.describe()));
+        }
+        return descriptions;
+    }
+
+    /**
+     * Normalizes a specification without compiling it: flattens nested ANDs and ORs, removes
+     * double negations and folds operands whose combination is known in advance.
+     * AND and OR operands keep their order, so the evaluation short-circuits as before.
+     *
+     * @param specification the specification to normalize.
+     * @param <T> the type of object the specification can be applied to.
+     * @return an equivalent specification.
+     */
+    public static <T> Specification<T> normalize(Specification<T> specification) {
+        if (specification instanceof CompiledSpecification<T> compiled) {
+            return compiled.getSpecification();
+        }
+        if (specification instanceof NotSpecification<T> not) {
+            Specification<T> operand = normalize(not.getSpec());
+            if (operand instanceof NotSpecification<T> negated) {
+                return negated.getSpec();
+            }
+            if (operand instanceof ConstantSpecification<T> constant) {
+                return ConstantSpecification.of(!constant.getValue());
+            }
+            return new NotSpecification<>(operand);
+        }
+        if (specification instanceof AndSpecification<T> || specification instanceof OrSpecification<T>) {
+            boolean conjunction = specification instanceof AndSpecification<T>;
+            List<Specification<T>> operands = new ArrayList<>();
+            collectOperands(specification, conjunction, operands);
+            return combine(operands, conjunction);
+        }
+        return specification;
+    }
+
+    /**
+     * Collects the normalized operands of a chain of ANDs (or of ORs), at any nesting depth.
+     */
+    private static <T> void collectOperands(Specification<T> specification, boolean conjunction,
+                                            List<Specification<T>> operands) {
+        if (conjunction && specification instanceof AndSpecification<T> and) {
+            collectOperands(and.getSpec1(), true, operands);
+            collectOperands(and.getSpec2(), true, operands);
+        } else if (!conjunction && specification instanceof OrSpecification<T> or) {
+            collectOperands(or.getSpec1(), false, operands);
+            collectOperands(or.getSpec2(), false, operands);
+        } else {
+            Specification<T> normalized = normalize(specification);
+            //Removing a double negation may uncover another operand of the same kind
+            if (normalized != specification && (conjunction ? normalized instanceof AndSpecification<T>
+                    : normalized instanceof OrSpecification<T>)) {
+                collectOperands(normalized, conjunction, operands);
+            } else {
+                operands.add(normalized);
+            }
+        }
+    }
+
+    /**
+     * Folds a list of operands and chains the remaining ones with AND (or OR).
+     */
+    private static <T> Specification<T> combine(List<Specification<T>> operands, boolean conjunction) {
+        List<Specification<T>> remaining = new ArrayList<>();
+        for (Specification<T> operand : operands) {
+            if (operand instanceof ConstantSpecification<T> constant) {
+                if (constant.getValue() == conjunction) {
+                    continue; //TRUE in an AND, FALSE in an OR
+                }
+                return constant;
+            }
+            boolean merged = false;
+            for (int i = 0; i < remaining.size() && !merged; i++) {
+                Specification<T> combined = merge(remaining.get(i), operand, conjunction);
+                if (combined instanceof ConstantSpecification<T>) {
+                    return combined;
+                }
+                if (combined != null) {
+                    remaining.set(i, combined);
+                    merged = true;
+                }
+            }
+            if (!merged) {
+                remaining.add(operand);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return ConstantSpecification.of(conjunction);
+        }
+        Specification<T> result = remaining.get(0);
+        for (int i = 1; i < remaining.size(); i++) {
+            result = conjunction ? new AndSpecification<>(result, remaining.get(i))
+                    : new OrSpecification<>(result, remaining.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Merges two operands of the same AND (or OR) into one.
+     *
+     * @return the merged operand, a constant if the whole AND (or OR) is decided, or null if the
+     * operands cannot be merged.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Specification<T> merge(Specification<T> first, Specification<T> second, boolean conjunction) {
+        if (first == second) {
+            return first;
+        }
+        if (first instanceof NotSpecification<T> not && not.getSpec() == second
+                || second instanceof NotSpecification<T> not2 && not2.getSpec() == first) {
+            return ConstantSpecification.of(!conjunction);
+        }
+        return (Specification<T>) mergeVehicleSpecifications(first, second, conjunction);
+    }
+
+    private static Specification<Vehicle> mergeVehicleSpecifications(Object first, Object second, boolean conjunction) {
+        if (first instanceof VehicleStatusSpecification a && second instanceof VehicleStatusSpecification b) {
+            if (a.getStatus() == b.getStatus()) {
+                return a;
+            }
+            return conjunction ? ConstantSpecification.of(false) : null;
+        }
+        if (first instanceof EngineTypeSpecification a && second instanceof EngineTypeSpecification b) {
+            if (a.getEngineType() == b.getEngineType()) {
+                return a;
+            }
+            return conjunction ? ConstantSpecification.of(false) : null;
+        }
+        if (first instanceof RefrigerationUnitSpecification a && second instanceof RefrigerationUnitSpecification b) {
+            if (a.requiresRefrigeration() == b.requiresRefrigeration()) {
+                return a;
+            }
+            return conjunction ? ConstantSpecification.of(false) : null;
+        }
+        //Thresholds: AND keeps the stricter, OR the looser
+        if (first instanceof CargoCapacitySpecification a && second instanceof CargoCapacitySpecification b) {
+            return (a.getMinCargoCapacity() >= b.getMinCargoCapacity()) == conjunction ? a : b;
+        }
+        if (first instanceof PassengerCapacitySpecification a && second instanceof PassengerCapacitySpecification b) {
+            return (a.getMinPassengerCapacity() >= b.getMinPassengerCapacity()) == conjunction ? a : b;
+        }
+        if (first instanceof OperationableSpecification a && second instanceof OperationableSpecification b) {
+            return (a.getMinFuelLevel() >= b.getMinFuelLevel()) == conjunction ? a : b;
+        }
+        return null;
+    }
+
+    /**
+     * Fuses a normalized specification into a predicate whose method handle is a JIT constant.
+     * The hidden class holding the handle is unloaded along with the predicate, e.g. when the
+     * specification is compiled again in another order.
+     */
+    static Predicate<Object> fuse(Specification<?> specification) {
+        try {
+            MethodHandles.Lookup fused = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(FUSED_PREDICATE_TEMPLATE, emit(specification), true);
+            @SuppressWarnings("unchecked")
+            Predicate<Object> predicate = (Predicate<Object>) fused
+                    .findConstructor(fused.lookupClass(), MethodType.methodType(void.class)).invoke();
+            return predicate;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot define the fused predicate of " + specification, e);
+        }
+    }
+
+    /**
+     * Builds the method handle of a normalized specification, of type {@code (Object)boolean}.
+     */
+    static MethodHandle emit(Specification<?> specification) {
+        if (specification instanceof ConstantSpecification<?> constant) {
+            return constant.getValue() ? ALWAYS : NEVER;
+        }
+        if (specification instanceof NotSpecification<?> not) {
+            return MethodHandles.filterReturnValue(emit(not.getSpec()), NOT);
+        }
+        if (specification instanceof AndSpecification<?> || specification instanceof OrSpecification<?>) {
+            boolean conjunction = specification instanceof AndSpecification<?>;
+            List<Specification<?>> operands = new ArrayList<>();
+            collectChain(specification, conjunction, operands);
+            //Built from the last operand backwards so the first operand is tested first
+            MethodHandle result = emit(operands.get(operands.size() - 1));
+            for (int i = operands.size() - 2; i >= 0; i--) {
+                MethodHandle test = emit(operands.get(i));
+                result = conjunction ? MethodHandles.guardWithTest(test, result, NEVER)
+                        : MethodHandles.guardWithTest(test, ALWAYS, result);
+            }
+            return result;
+        }
+        return leaf(specification);
+    }
+
+    private static void collectChain(Specification<?> specification, boolean conjunction, List<Specification<?>> operands) {
+        if (conjunction && specification instanceof AndSpecification<?> and) {
+            collectChain(and.getSpec1(), true, operands);
+            collectChain(and.getSpec2(), true, operands);
+        } else if (!conjunction && specification instanceof OrSpecification<?> or) {
+            collectChain(or.getSpec1(), false, operands);
+            collectChain(or.getSpec2(), false, operands);
+        } else {
+            operands.add(specification);
+        }
+    }
+
+    /**
+     * Binds the {@code isSatisfiedBy} method declared by the class of a leaf to the leaf itself.
+     * Leaves of classes that are not public are called through the interface instead.
+     */
+    private static MethodHandle leaf(Specification<?> specification) {
+        for (Method method : specification.getClass().getMethods()) {
+            if (method.getName().equals("isSatisfiedBy") && method.getParameterCount() == 1 && !method.isBridge()) {
+                try {
+                    return MethodHandles.publicLookup().unreflect(method).bindTo(specification).asType(PREDICATE_TYPE);
+                } catch (IllegalAccessException e) {
+                    break;
+                }
+            }
+        }
+        return IS_SATISFIED_BY.bindTo(specification);
+    }
+
+    private static MethodHandle constant(boolean value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(boolean.class, value), 0, Object.class);
+    }
+
+    private static boolean not(boolean value) {
+        return !value;
+    }
+}
@@ -0,0 +1,300 @@
+package org.car.allocation.specification;
+
+import org.car.allocation.index.FleetColumns;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Observed pass rate and cost of every node of a normalized specification, used to reorder
+ * the operands of ANDs and ORs so that evaluation short-circuits as early and as cheaply as
+ * possible.
+ * <p>
+ * A sampled evaluation evaluates every node, without short-circuiting, so that each node
+ * is measured on the same objects. Scans of the fleet columns are sampled the same way, one block
+ * of rows at a time, and count once per row, so both paths feed one profile. Leaves are timed; the cost of an AND, OR or NOT is derived
+ * from its operands in their current order, assuming they are independent. The operands of an
+ * AND are ranked by {@code cost / (1 - pass rate)}, those of an OR by {@code cost / pass rate}:
+ * the cheap operands that decide the outcome most often come first. The counts are halved
+ * after each reordering, so older samples (including those taken before the JIT warmed up)
+ * weigh less and the order follows changes in the data.
+ * </p>
+ *
+ * @param <T> the type of object the specification can be applied to.
+ */
+final class SpecificationProfile<T> {
+    private final Node<T> root;
+
+    SpecificationProfile(Specification<T> specification) {
+        this.root = node(specification);
+    }
+
+    /**
+     * Evaluates every node of the specification on an object and records the outcomes.
+     *
+     * @param t the object to evaluate.
+     * @return whether the object satisfies the specification.
+     */
+    boolean sample(T t) {
+        return root.sample(t);
+    }
+
+    /**
+     * Scans every node of the specification over a block of the fleet columns and records the
+     * outcome of each row.
+     *
+     * @param columns the columnar snapshot of the fleet.
+     * @param base the slot of the first row of the block.
+     * @param mask the rows of the block to scan.
+     * @return the rows of the mask that satisfy the specification.
+     */
+    long sampleScan(FleetColumns columns, int base, long mask) {
+        return root.sampleScan(columns, base, mask);
+    }
+
+    /**
+     * Reorders the operands of every AND and OR by their rank.
+     *
+     * @return true if any operand moved.
+     */
+    boolean reorder() {
+        boolean changed = root.reorder();
+        root.decay();
+        return changed;
+    }
+
+    /**
+     * Builds the specification with the operands in their current order.
+     *
+     * @return a specification equivalent to the profiled one.
+     */
+    Specification<T> toSpecification() {
+        return root.toSpecification();
+    }
+
+    /**
+     * Describes the evaluation order with the observed pass rate and cost of each node.
+     *
+     * @return the description, e.g. {@code AND(RefrigerationUnitSpecification [pass 48%, 0.35 ns], ...)}
+     */
+    String describe() {
+        StringBuilder description = new StringBuilder();
+        root.describe(description);
+        return description.toString();
+    }
+
+    private static <T> Node<T> node(Specification<T> specification) {
+        if (specification instanceof AndSpecification<T> || specification instanceof OrSpecification<T>) {
+            Kind kind = specification instanceof AndSpecification<T> ? Kind.AND : Kind.OR;
+            List<Specification<T>> operands = new ArrayList<>();
+            collectChain(specification, kind, operands);
+            List<Node<T>> children = new ArrayList<>();
+            for (Specification<T> operand : operands) {
+                children.add(node(operand));
+            }
+            return new Node<>(kind, specification, children);
+        }
+        if (specification instanceof NotSpecification<T> not) {
+            return new Node<>(Kind.NOT, specification, List.of(node(not.getSpec())));
+        }
+        return new Node<>(Kind.LEAF, specification, List.of());
+    }
+
+    private static <T> void collectChain(Specification<T> specification, Kind kind, List<Specification<T>> operands) {
+        if (kind == Kind.AND && specification instanceof AndSpecification<T> and) {
+            collectChain(and.getSpec1(), kind, operands);
+            collectChain(and.getSpec2(), kind, operands);
+        } else if (kind == Kind.OR && specification instanceof OrSpecification<T> or) {
+            collectChain(or.getSpec1(), kind, operands);
+            collectChain(or.getSpec2(), kind, operands);
+        } else {
+            operands.add(specification);
+        }
+    }
+
+    private enum Kind { LEAF, NOT, AND, OR }
+
+    /**
+     * A node of the profiled specification; an AND or OR node holds the whole chain of operands.
+     */
+    private static final class Node<T> {
+        private static final double MIN_GAIN = 0.1;
+        private static final double MIN_COST = 0.01;
+
+        private final Kind kind;
+        private final Specification<T> leaf;
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder passes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        //Replaced as a whole on reorder, so a concurrent sample sees either order
+        private volatile List<Node<T>> children;
+
+        Node(Kind kind, Specification<T> specification, List<Node<T>> children) {
+            this.kind = kind;
+            this.leaf = specification;
+            this.children = List.copyOf(children);
+        }
+
+        boolean sample(T t) {
+            boolean result;
+            switch (kind) {
+                case LEAF -> {
+                    long start = System.nanoTime();
+                    result = leaf.isSatisfiedBy(t);
+                    nanos.add(System.nanoTime() - start);
+                }
+                case NOT -> result = !children.get(0).sample(t);
+                default -> {
+                    boolean conjunction = kind == Kind.AND;
+                    result = conjunction;
+                    for (Node<T> child : children) {
+                        //Every operand is sampled, whatever the outcome so far
+                        if (child.sample(t) != conjunction) {
+                            result = !conjunction;
+                        }
+                    }
+                }
+            }
+            samples.increment();
+            if (result) {
+                passes.increment();
+            }
+            return result;
+        }
+
+        long sampleScan(FleetColumns columns, int base, long mask) {
+            long result;
+            switch (kind) {
+                case LEAF -> {
+                    long start = System.nanoTime();
+                    result = leaf.scan(columns, base, mask);
+                    nanos.add(System.nanoTime() - start);
+                }
+                case NOT -> result = mask & ~children.get(0).sampleScan(columns, base, mask);
+                default -> {
+                    boolean conjunction = kind == Kind.AND;
+                    result = conjunction ? mask : 0;
+                    for (Node<T> child : children) {
+                        //Every operand scans the whole mask, whatever the outcome so far
+                        long matching = child.sampleScan(columns, base, mask);
+                        result = conjunction ? result & matching : result | matching;
+                    }
+                }
+            }
+            samples.add(Long.bitCount(mask));
+            passes.add(Long.bitCount(result));
+            return result;
+        }
+
+        double passRate() {
+            long count = samples.sum();
+            return count == 0 ? 0.5 : (double) passes.sum() / count;
+        }
+
+        /**
+         * Estimates the cost of evaluating this node, in nanoseconds, with short-circuiting.
+         */
+        double cost() {
+            switch (kind) {
+                case LEAF -> {
+                    long count = samples.sum();
+                    //A vectorized scan can cost well under a nanosecond per row
+                    return count == 0 ? 1 : Math.max(MIN_COST, (double) nanos.sum() / count);
+                }
+                case NOT -> {
+                    return children.get(0).cost();
+                }
+                default -> {
+                    return chainCost(children);
+                }
+            }
+        }
+
+        /**
+         * Estimates the cost of evaluating the operands of an AND or OR in the given order:
+         * each operand is only evaluated if the previous ones did not decide the outcome.
+         */
+        private double chainCost(List<Node<T>> operands) {
+            double cost = 0;
+            double reached = 1;
+            for (Node<T> operand : operands) {
+                cost += reached * operand.cost();
+                reached *= kind == Kind.AND ? operand.passRate() : 1 - operand.passRate();
+            }
+            return cost;
+        }
+
+        double rank(Kind parent) {
+            double decisive = parent == Kind.AND ? 1 - passRate() : passRate();
+            return decisive <= 0 ? Double.POSITIVE_INFINITY : cost() / decisive;
+        }
+
+        boolean reorder() {
+            boolean changed = false;
+            for (Node<T> child : children) {
+                changed |= child.reorder();
+            }
+            if (kind == Kind.AND || kind == Kind.OR) {
+                List<Node<T>> ordered = new ArrayList<>(children);
+                //Stable: operands with the same rank keep the order they were built in
+                ordered.sort(Comparator.comparingDouble(child -> child.rank(kind)));
+                //Timings are noisy: only move operands for a clear gain, so the order settles
+                if (!ordered.equals(children) && chainCost(ordered) < chainCost(children) * (1 - MIN_GAIN)) {
+                    children = List.copyOf(ordered);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        void decay() {
+            for (LongAdder counter : List.of(samples, passes, nanos)) {
+                counter.add(-(counter.sum() / 2));
+            }
+            for (Node<T> child : children) {
+                child.decay();
+            }
+        }
+
+        Specification<T> toSpecification() {
+            switch (kind) {
+                case LEAF -> {
+                    return leaf;
+                }
+                case NOT -> {
+                    return new NotSpecification<>(children.get(0).toSpecification());
+                }
+                default -> {
+                    List<Node<T>> operands = children;
+                    Specification<T> result = operands.get(0).toSpecification();
+                    for (int i = 1; i < operands.size(); i++) {
+                        Specification<T> operand = operands.get(i).toSpecification();
+                        result = kind == Kind.AND ? new AndSpecification<>(result, operand)
+                                : new OrSpecification<>(result, operand);
+                    }
+                    return result;
+                }
+            }
+        }
+
+        void describe(StringBuilder description) {
+            if (kind == Kind.LEAF) {
+                description.append(leaf.getClass().getSimpleName());
+            } else {
+                description.append(kind).append('(');
+                List<Node<T>> operands = children;
+                for (int i = 0; i < operands.size(); i++) {
+                    if (i > 0) {
+                        description.append(", ");
+                    }
+                    operands.get(i).describe(description);
+                }
+                description.append(')');
+            }
+            description.append(String.format(Locale.ROOT, " [pass %.0f%%, %.2f ns]", passRate() * 100, cost()));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.car.allocation.specification;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.model.Vehicle;
+
+import java.util.function.Function;
+
+/**
+ * Helper for specifications that only apply to one vehicle subtype (e.g. cargo capacity on trucks).
+ * It adapts the subtype restriction to the query root: a root of the subtype is used directly,
+ * a polymorphic {@link Vehicle} root is narrowed with a type check and a TREAT, and any other
+ * root never matches.
+ */
+final class VehicleCriteria {
+    private VehicleCriteria() {}
+
+    /**
+     * Builds a predicate that only holds for rows of the given subtype satisfying the restriction.
+     *
+     * @param root the query root.
+     * @param criteriaBuilder the criteria builder.
+     * @param subtype the vehicle subtype the restriction applies to.
+     * @param restriction builds the predicate on a root of the subtype.
+     * @param <S> the vehicle subtype.
+     * @return the restricted predicate.
+     */
+    @SuppressWarnings("unchecked")
+    static <S extends Vehicle> Predicate restrictTo(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder,
+                                                    Class<S> subtype, Function<Root<S>, Predicate> restriction) {
+        if (subtype.isAssignableFrom(root.getJavaType())) {
+            return restriction.apply((Root<S>) root);
+        }
+        if (root.getJavaType().isAssignableFrom(subtype)) {
+            //The type check keeps rows of other subtypes false (not unknown) when the predicate is negated
+            Root<S> treated = criteriaBuilder.treat((Root<Vehicle>) root, subtype);
+            return criteriaBuilder.and(criteriaBuilder.equal(root.type(), subtype), restriction.apply(treated));
+        }
+        return criteriaBuilder.disjunction();
+    }
+}
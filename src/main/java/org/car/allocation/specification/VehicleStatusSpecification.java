@@ -1,5 +1,10 @@
 package org.car.allocation.specification;
 
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.car.allocation.index.ColumnKernels;
+import org.car.allocation.index.FleetColumns;
 import org.car.allocation.model.Vehicle;
 import org.car.allocation.util.VehicleStatus;
 
@@ -16,11 +21,29 @@ public class VehicleStatusSpecification implements Specification<Vehicle> {
         this.status = status;
     }
 
+    /**
+     * Retrieves the status a vehicle must have.
+     * @return the required status
+     */
+    public VehicleStatus getStatus() {
+        return status;
+    }
+
     @Override
     public boolean isSatisfiedBy(Vehicle vehicle) {
         return vehicle.getVehicleStatus() == status;
     }
 
+    @Override
+    public Predicate toPredicate(Root<? extends Vehicle> root, CriteriaBuilder criteriaBuilder) {
+        return criteriaBuilder.equal(root.get("vehicleStatus"), status);
+    }
+
+    @Override
+    public long scan(FleetColumns columns, int base, long mask) {
+        return ColumnKernels.equalTo(columns.status(), base, mask, (byte) status.ordinal());
+    }
+
     @Override
     public Specification<Vehicle> and(Specification<Vehicle> other) {
         return new AndSpecification<>(this, other);
@@ -0,0 +1,101 @@
+package org.car.allocation.strategy;
+
+import java.util.Objects;
+
+/**
+ * An immutable request for a vehicle, holding the answers the console asks for: whether cargo or
+ * passengers are transported, whether the cargo needs refrigeration, the minimum capacity and
+ * whether comfort matters. {@link #toStrategy()} resolves it to the {@link AllocationStrategy}
+ * that serves it, so allocation can be driven without a console, e.g. by batch jobs or a server.
+ */
+public final class AllocationRequest {
+    private final boolean cargo;
+    private final boolean refrigerated;
+    private final boolean comfort;
+    private final double minCapacity;
+
+    private AllocationRequest(boolean cargo, boolean refrigerated, boolean comfort, double minCapacity) {
+        this.cargo = cargo;
+        this.refrigerated = refrigerated;
+        this.comfort = comfort;
+        this.minCapacity = minCapacity;
+    }
+
+    /**
+     * Creates a request for a truck.
+     *
+     * @param refrigerated whether the cargo needs a refrigeration unit.
+     * @param minCargoCapacity the minimum cargo capacity, or 0 or less for no specific requirement;
+     *                         ignored for refrigerated cargo.
+     * @return the request.
+     */
+    public static AllocationRequest forCargo(boolean refrigerated, double minCargoCapacity) {
+        return new AllocationRequest(true, refrigerated, false, refrigerated ? 0 : minCargoCapacity);
+    }
+
+    /**
+     * Creates a request for a car.
+     *
+     * @param comfort whether a comfortable car is wanted.
+     * @param minPassengerCapacity the minimum number of passengers; ignored without comfort.
+     * @return the request.
+     */
+    public static AllocationRequest forPassengers(boolean comfort, int minPassengerCapacity) {
+        return new AllocationRequest(false, false, comfort, comfort ? minPassengerCapacity : 0);
+    }
+
+    public boolean isCargo() {
+        return cargo;
+    }
+
+    public boolean requiresRefrigeration() {
+        return refrigerated;
+    }
+
+    public boolean requiresComfort() {
+        return comfort;
+    }
+
+    /**
+     * Retrieves the minimum capacity: the cargo capacity of a truck or the number of passengers of a car.
+     * @return the minimum capacity, or 0 if there is no specific requirement.
+     */
+    public double getMinCapacity() {
+        return minCapacity;
+    }
+
+    /**
+     * Resolves the strategy that serves this request, the same way as the console does.
+     * @return the allocation strategy.
+     */
+    public AllocationStrategy toStrategy() {
+        if (cargo) {
+            if (refrigerated) {
+                return new RefrigerationStrategy();
+            }
+            return minCapacity > 0 ? new CargoPriorityStrategy(minCapacity) : new NonRefrigeratedHighSpeedStrategy();
+        }
+        return comfort ? new ComfortPriorityStrategy((int) minCapacity) : new FuelEfficientStrategy();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof AllocationRequest)) {
+            return false;
+        }
+        AllocationRequest request = (AllocationRequest) other;
+        return cargo == request.cargo && refrigerated == request.refrigerated && comfort == request.comfort
+                && Double.compare(minCapacity, request.minCapacity) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cargo, refrigerated, comfort, minCapacity);
+    }
+
+    @Override
+    public String toString() {
+        return "AllocationRequest [cargo: " + cargo + ", refrigerated: " + refrigerated
+                + ", comfort: " + comfort + ", min capacity: " + minCapacity + "]";
+    }
+}
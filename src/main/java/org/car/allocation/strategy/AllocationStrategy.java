@@ -1,8 +1,11 @@
 package org.car.allocation.strategy;
 
 import org.car.allocation.model.Vehicle;
+import org.car.allocation.specification.Specification;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interface for vehicle allocation strategies.
@@ -16,4 +19,65 @@ public interface AllocationStrategy {
      * @return The vehicle that fits the strategy criteria.
      */
     Vehicle allocate(List<Vehicle> availableVehicles);
+
+    /**
+     * Provides the specification the strategy filters the available vehicles with, so that
+     * callers can narrow the candidates down before calling {@link #allocate(List)}.
+     * @return the specification, or null if the strategy does not filter.
+     */
+    default Specification<Vehicle> getSpecification() {
+        return null;
+    }
+
+    /**
+     * Tells whether the strategy could choose a vehicle, i.e. whether {@link #allocate(List)}
+     * would keep it after filtering.
+     * @param vehicle the vehicle to check.
+     * @return true if the vehicle is a candidate of the strategy.
+     */
+    default boolean isEligible(Vehicle vehicle) {
+        Specification<Vehicle> specification = getSpecification();
+        return specification == null || specification.isSatisfiedBy(vehicle);
+    }
+
+    /**
+     * Provides the order in which the strategy prefers its eligible vehicles, best first, so that
+     * callers can keep them in a priority queue instead of calling {@link #allocate(List)}.
+     * Strategies with equal settings must be equal, so that such a queue can be shared.
+     * @return the order of preference, or null if the strategy does not rank by a key.
+     */
+    default Comparator<Vehicle> getPriority() {
+        return null;
+    }
+
+    /**
+     * Ranks the best candidates of the strategy, e.g. to offer alternatives or to fall back on
+     * when the best one is taken concurrently.
+     *
+     * @param vehicles the vehicles to rank.
+     * @param k the maximum number of vehicles to return.
+     * @return up to {@code k} eligible vehicles, best first.
+     * @see #rankTopK(Stream, int)
+     */
+    default List<Vehicle> rankTopK(List<Vehicle> vehicles, int k) {
+        return rankTopK(vehicles.stream(), k);
+    }
+
+    /**
+     * Ranks the best candidates of the strategy from a stream, which is consumed once and never
+     * held in memory: with a priority the best {@code k} are kept in a bounded heap (O(n log k)),
+     * and without one the first {@code k} eligible vehicles are taken in encounter order.
+     *
+     * @param vehicles the vehicles to rank.
+     * @param k the maximum number of vehicles to return.
+     * @return up to {@code k} eligible vehicles, best first.
+     */
+    default List<Vehicle> rankTopK(Stream<Vehicle> vehicles, int k) {
+        Comparator<Vehicle> priority = getPriority();
+        Stream<Vehicle> eligible = vehicles.filter(this::isEligible);
+        if (priority == null) {
+            return eligible.limit(k).toList();
+        }
+        return eligible.collect(TopK.collector(priority, k));
+    }
 }
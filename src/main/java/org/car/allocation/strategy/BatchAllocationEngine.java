@@ -0,0 +1,266 @@
+package org.car.allocation.strategy;
+
+import org.car.allocation.model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Allocates vehicles to many requests at once, so that early requests do not take the
+ * vehicles that later requests needed more.
+ * <p>
+ * Each request is an {@link AllocationStrategy}. The assignment is solved as a min-cost
+ * bipartite matching: first the largest number of requests is served, then the total cost is
+ * the lowest, where serving a request with the vehicle its strategy ranks {@code r}-th costs
+ * {@code r}. Equal strategies are interchangeable, so they form one group that can take as
+ * many vehicles as it has requests. The candidate edges are sparse: a group only considers the
+ * best {@code n} vehicles of its strategy, where {@code n} is the number of requests of the
+ * whole batch. An optimal matching never needs a worse vehicle, since at most {@code n - 1} of
+ * the better ones are taken by other requests.
+ * </p>
+ * <p>
+ * The matching is found by min-cost flow with successive shortest paths, one request at a time.
+ * The network is contracted to one node per group: a path either gives a group its best free
+ * candidate, or lets it take a vehicle of another group, which then needs another vehicle in
+ * turn. The cheapest such swap between two groups is kept in a heap, so each shortest path is
+ * found with Dijkstra's algorithm on the groups only, with costs reduced by node potentials,
+ * whatever the size of the fleet.
+ * </p>
+ */
+public class BatchAllocationEngine {
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+
+    /**
+     * Assigns vehicles of the fleet to the requests.
+     *
+     * @param requests the strategy of each request.
+     * @param fleet the vehicles that can be allocated.
+     * @return the vehicle assigned to each request, in the order of the requests, or null for the
+     * requests that could not be served. Within a group of equal strategies, earlier requests
+     * get the better vehicles.
+     */
+    public List<Vehicle> assign(List<AllocationStrategy> requests, List<Vehicle> fleet) {
+        //The requests of each distinct strategy, in arrival order
+        Map<AllocationStrategy, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            groups.computeIfAbsent(requests.get(i), strategy -> new ArrayList<>()).add(i);
+        }
+        int candidateCount = Math.min(requests.size(), fleet.size());
+        List<List<Integer>> members = new ArrayList<>(groups.values());
+        List<List<Vehicle>> candidates = new ArrayList<>(groups.size());
+        for (AllocationStrategy strategy : groups.keySet()) {
+            candidates.add(strategy.rankTopK(fleet, candidateCount));
+        }
+        Matching matching = new Matching(candidates, members.stream().mapToInt(List::size).toArray());
+        matching.solve();
+
+        //Hand the vehicles of each group out to its requests, best ranked first
+        Vehicle[] assignment = new Vehicle[requests.size()];
+        for (int group = 0; group < members.size(); group++) {
+            int member = 0;
+            for (Vehicle vehicle : matching.vehiclesOf(group)) {
+                assignment[members.get(group).get(member++)] = vehicle;
+            }
+        }
+        return Arrays.asList(assignment);
+    }
+
+    /**
+     * Min-cost matching of groups with a demand to their ranked candidates.
+     * Node {@code g} of the contracted network is group {@code g}; node {@code groups} is the
+     * source, which has an edge to every group with unmet demand, and node {@code groups + 1}
+     * is the sink, which every group reaches through its best free candidate.
+     */
+    private static final class Matching {
+        private final int groups;
+        private final int source;
+        private final int sink;
+        private final int[] demand;
+        private final List<Vehicle> vehicles = new ArrayList<>();
+        //The groups that rank each vehicle, with the rank they give it
+        private final List<int[]> groupsByVehicle = new ArrayList<>();
+        private final List<int[]> ranksByVehicle = new ArrayList<>();
+        //The vehicles of each group, best ranked first
+        private final int[][] rankedVehicles;
+        private final int[] owner;
+        //The first candidate of each group that may still be free; vehicles are never freed again
+        private final int[] freeCursor;
+        //The vehicles owned by group b that group a ranks, by the cost of a taking them from b
+        private final PriorityQueue<Long>[][] swaps;
+        private final long[] potential;
+
+        @SuppressWarnings("unchecked")
+        Matching(List<List<Vehicle>> candidates, int[] demand) {
+            this.groups = candidates.size();
+            this.source = groups;
+            this.sink = groups + 1;
+            this.demand = demand.clone();
+            this.rankedVehicles = new int[groups][];
+            Map<Integer, Integer> indexesById = new HashMap<>();
+            Map<Integer, List<int[]>> rankings = new HashMap<>();
+            for (int group = 0; group < groups; group++) {
+                List<Vehicle> ranked = candidates.get(group);
+                rankedVehicles[group] = new int[ranked.size()];
+                for (int rank = 0; rank < ranked.size(); rank++) {
+                    Vehicle vehicle = ranked.get(rank);
+                    Integer index = indexesById.putIfAbsent(vehicle.getId(), vehicles.size());
+                    if (index == null) {
+                        index = vehicles.size();
+                        vehicles.add(vehicle);
+                    }
+                    rankedVehicles[group][rank] = index;
+                    rankings.computeIfAbsent(index, i -> new ArrayList<>()).add(new int[]{group, rank});
+                }
+            }
+            for (int index = 0; index < vehicles.size(); index++) {
+                List<int[]> ranking = rankings.get(index);
+                groupsByVehicle.add(ranking.stream().mapToInt(entry -> entry[0]).toArray());
+                ranksByVehicle.add(ranking.stream().mapToInt(entry -> entry[1]).toArray());
+            }
+            this.owner = new int[vehicles.size()];
+            Arrays.fill(owner, -1);
+            this.freeCursor = new int[groups];
+            this.swaps = new PriorityQueue[groups][groups];
+            this.potential = new long[groups + 2];
+        }
+
+        /**
+         * Serves one unit of demand per shortest path until the sink cannot be reached anymore.
+         * The costs are non-negative, so all potentials can start at zero.
+         */
+        void solve() {
+            int nodes = groups + 2;
+            long[] distance = new long[nodes];
+            int[] previous = new int[nodes];
+            int[] viaVehicle = new int[nodes];
+            boolean[] settled = new boolean[nodes];
+            while (true) {
+                Arrays.fill(distance, UNREACHABLE);
+                Arrays.fill(settled, false);
+                distance[source] = 0;
+                while (true) {
+                    int node = -1;
+                    for (int candidate = 0; candidate < nodes; candidate++) {
+                        if (!settled[candidate] && distance[candidate] != UNREACHABLE
+                                && (node == -1 || distance[candidate] < distance[node])) {
+                            node = candidate;
+                        }
+                    }
+                    if (node == -1 || node == sink) {
+                        break;
+                    }
+                    settled[node] = true;
+                    if (node == source) {
+                        for (int group = 0; group < groups; group++) {
+                            if (demand[group] > 0) {
+                                relax(distance, previous, viaVehicle, source, group, -1, 0);
+                            }
+                        }
+                        continue;
+                    }
+                    int free = freeCandidate(node);
+                    if (free != -1) {
+                        relax(distance, previous, viaVehicle, node, sink, free, rankOf(node, free));
+                    }
+                    for (int other = 0; other < groups; other++) {
+                        long swap = other == node ? -1 : cheapestSwap(node, other);
+                        if (swap != -1) {
+                            int vehicle = (int) (swap & 0xffffffffL);
+                            relax(distance, previous, viaVehicle, node, other, vehicle, swap >> 32);
+                        }
+                    }
+                }
+                if (distance[sink] == UNREACHABLE) {
+                    return;
+                }
+                //Nodes not settled before the sink are at least as far, which keeps the reduced costs non-negative
+                for (int node = 0; node < nodes; node++) {
+                    potential[node] += Math.min(distance[node], distance[sink]);
+                }
+                for (int node = sink; previous[node] != source; node = previous[node]) {
+                    take(previous[node], viaVehicle[node]);
+                }
+                demand[firstGroup(previous)]--;
+            }
+        }
+
+        List<Vehicle> vehiclesOf(int group) {
+            List<Vehicle> result = new ArrayList<>();
+            for (int vehicle : rankedVehicles[group]) {
+                if (owner[vehicle] == group) {
+                    result.add(vehicles.get(vehicle));
+                }
+            }
+            return result;
+        }
+
+        private void relax(long[] distance, int[] previous, int[] viaVehicle, int from, int to, int vehicle, long cost) {
+            long reduced = distance[from] + cost + potential[from] - potential[to];
+            if (reduced < distance[to]) {
+                distance[to] = reduced;
+                previous[to] = from;
+                viaVehicle[to] = vehicle;
+            }
+        }
+
+        private int firstGroup(int[] previous) {
+            int node = sink;
+            while (previous[node] != source) {
+                node = previous[node];
+            }
+            return node;
+        }
+
+        private int freeCandidate(int group) {
+            int[] ranked = rankedVehicles[group];
+            while (freeCursor[group] < ranked.length && owner[ranked[freeCursor[group]]] != -1) {
+                freeCursor[group]++;
+            }
+            return freeCursor[group] < ranked.length ? ranked[freeCursor[group]] : -1;
+        }
+
+        /**
+         * Finds the cheapest vehicle of group {@code to} that group {@code from} could take.
+         * @return the cost in the high half and the vehicle in the low half, or -1 if there is none
+         */
+        private long cheapestSwap(int from, int to) {
+            PriorityQueue<Long> heap = swaps[from][to];
+            //Entries of vehicles that moved on since are dropped when they come up
+            while (heap != null && !heap.isEmpty() && owner[(int) (heap.peek() & 0xffffffffL)] != to) {
+                heap.poll();
+            }
+            return heap == null || heap.isEmpty() ? -1 : heap.peek();
+        }
+
+        private void take(int group, int vehicle) {
+            owner[vehicle] = group;
+            int[] rankingGroups = groupsByVehicle.get(vehicle);
+            int[] ranks = ranksByVehicle.get(vehicle);
+            int rank = rankOf(group, vehicle);
+            for (int i = 0; i < rankingGroups.length; i++) {
+                int other = rankingGroups[i];
+                if (other != group) {
+                    if (swaps[other][group] == null) {
+                        swaps[other][group] = new PriorityQueue<>();
+                    }
+                    swaps[other][group].add(((long) (ranks[i] - rank) << 32) | vehicle);
+                }
+            }
+        }
+
+        private int rankOf(int group, int vehicle) {
+            int[] rankingGroups = groupsByVehicle.get(vehicle);
+            for (int i = 0; i < rankingGroups.length; i++) {
+                if (rankingGroups[i] == group) {
+                    return ranksByVehicle.get(vehicle)[i];
+                }
+            }
+            throw new IllegalStateException("Group " + group + " does not rank vehicle " + vehicle);
+        }
+    }
+}
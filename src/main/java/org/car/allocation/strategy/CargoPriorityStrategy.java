@@ -5,6 +5,7 @@ import org.car.allocation.model.Truck;
 import org.car.allocation.specification.CargoCapacitySpecification;
 import org.car.allocation.specification.RefrigerationUnitSpecification;
 import org.car.allocation.specification.Specification;
+import org.car.allocation.specification.SpecificationCompiler;
 
 import java.util.Comparator;
 import java.util.List;
@@ -16,6 +17,7 @@ import java.util.Optional;
  * optimizing for the ability to transport the largest possible load without refrigeration.
  */
 public class CargoPriorityStrategy implements AllocationStrategy {
+    private final double minCargoCapacity;
     private final Specification<Vehicle> specification;
 
     /**
@@ -24,9 +26,12 @@ public class CargoPriorityStrategy implements AllocationStrategy {
      * @param minCargoCapacity the minimum cargo capacity required for the truck.
      */
     public CargoPriorityStrategy(double minCargoCapacity) {
-        Specification<Vehicle> cargoCapacitySpec = new CargoCapacitySpecification(minCargoCapacity);
-        Specification<Vehicle> nonRefrigeratedSpec = new RefrigerationUnitSpecification(false);
-        this.specification = cargoCapacitySpec.and(nonRefrigeratedSpec);
+        this.minCargoCapacity = minCargoCapacity;
+        this.specification = SpecificationCompiler.compileShared("CargoPriorityStrategy(" + minCargoCapacity + ")", () -> {
+            Specification<Vehicle> cargoCapacitySpec = new CargoCapacitySpecification(minCargoCapacity);
+            Specification<Vehicle> nonRefrigeratedSpec = new RefrigerationUnitSpecification(false);
+            return cargoCapacitySpec.and(nonRefrigeratedSpec);
+        });
     }
 
     /**
@@ -52,4 +57,29 @@ public class CargoPriorityStrategy implements AllocationStrategy {
                 .orElse(Optional.empty());
         return bestTruck.orElse(null);
     }
+
+    @Override
+    public Specification<Vehicle> getSpecification() {
+        return specification;
+    }
+
+    /**
+     * Prefers the trucks with the highest cargo capacity per unit of fuel.
+     */
+    @Override
+    public Comparator<Vehicle> getPriority() {
+        return Comparator.comparingDouble((Vehicle vehicle) ->
+                ((Truck) vehicle).getCargoCapacity() / vehicle.getFuelLevel()).reversed();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CargoPriorityStrategy strategy
+                && Double.compare(minCargoCapacity, strategy.minCargoCapacity) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(minCargoCapacity);
+    }
 }
@@ -4,7 +4,9 @@ import org.car.allocation.model.Car;
 import org.car.allocation.model.Vehicle;
 import org.car.allocation.specification.PassengerCapacitySpecification;
 import org.car.allocation.specification.Specification;
+import org.car.allocation.specification.SpecificationCompiler;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 /**
@@ -17,10 +19,14 @@ import java.util.stream.Collectors;
  * </p>
  */
 public class ComfortPriorityStrategy implements AllocationStrategy {
+    private final int minPassengerCapacity;
     private final Specification<Vehicle> passengerCapacitySpec;
 
     public ComfortPriorityStrategy(int minPassengerCapacity) {
-        this.passengerCapacitySpec = new PassengerCapacitySpecification(minPassengerCapacity);
+        this.minPassengerCapacity = minPassengerCapacity;
+        this.passengerCapacitySpec = SpecificationCompiler.compileShared(
+                "ComfortPriorityStrategy(" + minPassengerCapacity + ")",
+                () -> new PassengerCapacitySpecification(minPassengerCapacity));
     }
 
     /**
@@ -55,4 +61,28 @@ public class ComfortPriorityStrategy implements AllocationStrategy {
                 })
                 .orElse(null); //Return null if no suitable car is found
     }
+
+    @Override
+    public Specification<Vehicle> getSpecification() {
+        return passengerCapacitySpec;
+    }
+
+    /**
+     * Prefers the cars with the highest comfort level, then the lowest max speed.
+     */
+    @Override
+    public Comparator<Vehicle> getPriority() {
+        return Comparator.comparingInt((Vehicle vehicle) -> ((Car) vehicle).getComfortLevel()).reversed()
+                .thenComparingDouble(Vehicle::getMaxSpeed);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ComfortPriorityStrategy strategy && minPassengerCapacity == strategy.minPassengerCapacity;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(minPassengerCapacity);
+    }
 }
@@ -4,6 +4,7 @@ import org.car.allocation.model.Vehicle;
 import org.car.allocation.specification.EngineTypeSpecification;
 import org.car.allocation.specification.FuelEfficientSpecification;
 import org.car.allocation.specification.Specification;
+import org.car.allocation.specification.SpecificationCompiler;
 import org.car.allocation.util.EngineType;
 
 import java.util.List;
@@ -13,6 +14,19 @@ import java.util.List;
  * It selects the vehicle that TO BE COMPLETED
  */
 public class FuelEfficientStrategy implements AllocationStrategy {
+    private final Specification<Vehicle> specification;
+
+    public FuelEfficientStrategy() {
+        this.specification = SpecificationCompiler.compileShared("FuelEfficientStrategy", () -> {
+            Specification<Vehicle> ecoFriendlySpec = new EngineTypeSpecification(EngineType.ELECTRIC)
+                    .or(new EngineTypeSpecification(EngineType.HYBRID));
+
+            Specification<Vehicle> nonEcoSpec = new FuelEfficientSpecification(EngineType.PETROL, 150000, 100);
+
+            return ecoFriendlySpec.or(nonEcoSpec);
+        });
+    }
+
     /**
      * Allocates a vehicle based on fuel efficiency.
      * <p>
@@ -26,12 +40,6 @@ public class FuelEfficientStrategy implements AllocationStrategy {
      */
     @Override
     public Vehicle allocate(List<Vehicle> availableVehicles) {
-        Specification<Vehicle> ecoFriendlySpec = new EngineTypeSpecification(EngineType.ELECTRIC)
-                .or(new EngineTypeSpecification(EngineType.HYBRID));
-
-        Specification<Vehicle> nonEcoSpec = new FuelEfficientSpecification(EngineType.PETROL, 150000, 100);
-
-        var specification = ecoFriendlySpec.or(nonEcoSpec);
         List<Vehicle> filteredVehicles = availableVehicles.stream()
                 .filter(specification::isSatisfiedBy)
                 .toList();
@@ -40,4 +48,19 @@ public class FuelEfficientStrategy implements AllocationStrategy {
                 .findFirst()
                 .orElse(null);
     }
+
+    @Override
+    public Specification<Vehicle> getSpecification() {
+        return specification;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other != null && getClass() == other.getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
@@ -4,15 +4,15 @@ import org.car.allocation.model.Vehicle;
 import org.car.allocation.model.Truck;
 import org.car.allocation.specification.RefrigerationUnitSpecification;
 import org.car.allocation.specification.Specification;
+import org.car.allocation.specification.SpecificationCompiler;
 
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 /**
  * Implements the {@link AllocationStrategy} interface to allocate non-refrigerated trucks based on high speed.
  * <p>
  * This strategy selects the truck that is not equipped with a refrigeration unit and has the highest maximum speed.
- * It first filters trucks that are not refrigerated and then sorts them by their maximum speed in descending order.
+ * It first filters trucks that are not refrigerated and then ranks them by their maximum speed.
  * The truck with the highest speed is allocated.
  * </p>
  */
@@ -21,15 +21,15 @@ public class NonRefrigeratedHighSpeedStrategy implements AllocationStrategy {
 
     public NonRefrigeratedHighSpeedStrategy() {
         //Not refrigerated trucks
-        Specification<Vehicle> refrigeratedSpec = new RefrigerationUnitSpecification(true);
-        this.specification = refrigeratedSpec.not();
+        this.specification = SpecificationCompiler.compileShared("NonRefrigeratedHighSpeedStrategy",
+                () -> new RefrigerationUnitSpecification(true).not());
     }
 
     /**
      * Allocates a non-refrigerated truck with the highest maximum speed from the available vehicles.
      * <p>
-     * This method first filters the available vehicles to include only non-refrigerated trucks, then sorts them by their
-     * maximum speed in descending order. The truck with the highest speed is selected.
+     * This method keeps the non-refrigerated trucks and selects the one with the highest maximum speed
+     * through {@link #rankTopK(List, int)}, without sorting the others.
      * </p>
      *
      * @param availableVehicles the list of available vehicles.
@@ -37,16 +37,36 @@ public class NonRefrigeratedHighSpeedStrategy implements AllocationStrategy {
      */
     @Override
     public Vehicle allocate(List<Vehicle> availableVehicles) {
-        //Select trucks that are not refrigerated and have high max speed
-        List<Truck> suitableTrucks = availableVehicles.stream()
-                .filter(specification::isSatisfiedBy)
-                .filter(v -> v instanceof Truck) // Ensure it's a truck
-                .map(v -> (Truck) v)
-                .sorted(Comparator.comparingDouble(Truck::getMaxSpeed).reversed()) // Sort by max speed, highest first
-                .collect(Collectors.toList());
-
-        return suitableTrucks.stream()
-                .findFirst()
-                .orElse(null);
+        //Keep only the fastest non-refrigerated truck instead of sorting them all
+        List<Vehicle> fastestTruck = rankTopK(availableVehicles, 1);
+        return fastestTruck.isEmpty() ? null : fastestTruck.get(0);
+    }
+
+    @Override
+    public Specification<Vehicle> getSpecification() {
+        return specification;
+    }
+
+    @Override
+    public boolean isEligible(Vehicle vehicle) {
+        return vehicle instanceof Truck && specification.isSatisfiedBy(vehicle);
+    }
+
+    /**
+     * Prefers the trucks with the highest max speed.
+     */
+    @Override
+    public Comparator<Vehicle> getPriority() {
+        return Comparator.comparingDouble(Vehicle::getMaxSpeed).reversed();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other != null && getClass() == other.getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
     }
 }
@@ -4,6 +4,7 @@ import org.car.allocation.model.Truck;
 import org.car.allocation.model.Vehicle;
 import org.car.allocation.specification.RefrigerationUnitSpecification;
 import org.car.allocation.specification.Specification;
+import org.car.allocation.specification.SpecificationCompiler;
 
 import java.util.Comparator;
 import java.util.List;
@@ -16,7 +17,8 @@ public class RefrigerationStrategy implements AllocationStrategy {
     private final Specification<Vehicle> specification;
 
     public RefrigerationStrategy() {
-        this.specification = new RefrigerationUnitSpecification(true);
+        this.specification = SpecificationCompiler.compileShared("RefrigerationStrategy",
+                () -> new RefrigerationUnitSpecification(true));
     }
     /**
      * Allocates a truck with a refrigeration unit, prioritizing those with the lowest mileage.
@@ -41,4 +43,27 @@ public class RefrigerationStrategy implements AllocationStrategy {
                 .min(Comparator.comparingDouble(Truck::getMileage))
                 .orElse(null);
     }
+
+    @Override
+    public Specification<Vehicle> getSpecification() {
+        return specification;
+    }
+
+    /**
+     * Prefers the trucks with the lowest mileage.
+     */
+    @Override
+    public Comparator<Vehicle> getPriority() {
+        return Comparator.comparingDouble(Vehicle::getMileage);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other != null && getClass() == other.getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
@@ -0,0 +1,80 @@
+package org.car.allocation.strategy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collector;
+
+/**
+ * Keeps the best {@code k} of a sequence of elements in a bounded heap.
+ * The heap holds at most {@code k} elements with the worst of them at the root, so each new
+ * element is compared with the root only and replaces it if it is better: ranking {@code n}
+ * elements costs O(n log k) and O(k) memory, whatever the length of the sequence.
+ *
+ * @param <T> the type of the ranked elements
+ */
+public final class TopK<T> {
+    private final int k;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    /**
+     * Creates an empty ranking.
+     *
+     * @param order orders the elements, best first
+     * @param k the number of elements to keep
+     */
+    public TopK(Comparator<? super T> order, int k) {
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, k), order.reversed());
+    }
+
+    /**
+     * Offers an element to the ranking.
+     * @param element the element
+     */
+    public void add(T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (k > 0 && order.compare(element, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * Merges another ranking of the same order and size into this one.
+     * @param other the other ranking
+     * @return this ranking
+     */
+    public TopK<T> addAll(TopK<T> other) {
+        for (T element : other.heap) {
+            add(element);
+        }
+        return this;
+    }
+
+    /**
+     * Retrieves the best elements offered so far.
+     * @return up to {@code k} elements, best first
+     */
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+
+    /**
+     * Collects the best {@code k} elements of a stream.
+     *
+     * @param order orders the elements, best first
+     * @param k the number of elements to keep
+     * @param <T> the type of the elements
+     * @return a collector returning up to {@code k} elements, best first
+     */
+    public static <T> Collector<T, ?, List<T>> collector(Comparator<? super T> order, int k) {
+        return Collector.of(() -> new TopK<T>(order, k), TopK::add, TopK::addAll, TopK::toList);
+    }
+}